@@ -0,0 +1,91 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+
+import de.interactive_instruments.IFile;
+import de.interactive_instruments.etf.testdriver.TestResultCollector;
+
+/**
+ * Helpers shared by the benchmarks
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class BenchmarkSupport {
+
+    /**
+     * Representative project file, can be replaced with <code>-p projectFile=...</code>, i.e. with one of the
+     * integration test projects in build/tmp/testProjects/sui
+     */
+    final static String DEFAULT_PROJECT_FILE = "src/test/resources/sui/Req-Mgmt-soapui-project.xml";
+
+    private BenchmarkSupport() {}
+
+    /**
+     * A collector that discards all results, so that the driver is measured without the result persistence
+     */
+    static TestResultCollector noopCollector() {
+        return (TestResultCollector) Proxy.newProxyInstance(TestResultCollector.class.getClassLoader(),
+                new Class<?>[]{TestResultCollector.class}, (proxy, method, args) -> {
+                    final Class<?> type = method.getReturnType();
+                    if (type == boolean.class) {
+                        return false;
+                    } else if (type == int.class) {
+                        return 0;
+                    } else if (type == long.class) {
+                        return 0L;
+                    } else if (type == File.class) {
+                        return tempDir("collector");
+                    } else if (method.getName().equals("toString")) {
+                        return "noop collector";
+                    }
+                    return null;
+                });
+    }
+
+    static File projectFile(final String path) {
+        final File file = new File(path);
+        if (!file.isFile()) {
+            throw new IllegalArgumentException("Project file " + file.getAbsolutePath() + " not found");
+        }
+        return file;
+    }
+
+    static File tempDir(final String prefix) {
+        try {
+            final File dir = Files.createTempDirectory("etf-sui-jmh-" + prefix).toFile();
+            dir.deleteOnExit();
+            return dir;
+        } catch (final IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static void delete(final File dir) {
+        if (dir != null) {
+            new IFile(dir).deleteDirectory();
+        }
+    }
+}
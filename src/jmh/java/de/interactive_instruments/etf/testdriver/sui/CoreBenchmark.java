@@ -0,0 +1,75 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import com.eviware.soapui.SoapUI;
+import com.eviware.soapui.config.SoapuiSettingsDocumentConfig;
+import com.eviware.soapui.model.settings.Settings;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the creation of the {@link IISoapUICore}, which the driver does on initialization and for plugins, and
+ * the settings initialization of a new core from a settings file.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CoreBenchmark {
+
+    private File settingsDir;
+    private File settingsFile;
+
+    @Setup(Level.Trial)
+    public void writeSettings() throws Exception {
+        SoapUI.setSoapUICore(IISoapUICore.createDefault(), true);
+        settingsDir = BenchmarkSupport.tempDir("settings");
+        settingsFile = new File(settingsDir, "soapui-settings.xml");
+        final SoapuiSettingsDocumentConfig settingsDocument = SoapuiSettingsDocumentConfig.Factory.newInstance();
+        settingsDocument.addNewSoapuiSettings();
+        settingsDocument.save(settingsFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteSettings() {
+        BenchmarkSupport.delete(settingsDir);
+    }
+
+    @Benchmark
+    public Object createDefault() {
+        final IISoapUICore core = IISoapUICore.createDefault();
+        SoapUI.setSoapUICore(core, true);
+        return core;
+    }
+
+    @Benchmark
+    public Settings initSettings() {
+        return new IISoapUICore().initSettings(settingsFile.getAbsolutePath());
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import com.eviware.soapui.SoapUI;
+import com.eviware.soapui.impl.wsdl.WsdlProject;
+import com.eviware.soapui.impl.wsdl.WsdlTestSuite;
+import com.eviware.soapui.impl.wsdl.testcase.WsdlTestCase;
+import com.eviware.soapui.impl.wsdl.teststeps.registry.HttpRequestStepFactory;
+
+import org.openjdk.jmh.annotations.*;
+
+import de.interactive_instruments.etf.testdriver.TestResultCollector;
+
+/**
+ * Runs a small generated Executable Test Suite with GetFeature requests against the {@link WfsStubServer}, the way
+ * a test task does: {@link STestCaseRunner#initProject(TestResultCollector)} and {@link STestCaseRunner#runRunner()}.
+ * The results are discarded.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EndToEndBenchmark {
+
+    @Param({"4"})
+    public int testSuites;
+
+    @Param({"4"})
+    public int testCasesPerSuite;
+
+    @Param({"1", "4"})
+    public int parallelWorkers;
+
+    @Param({"5"})
+    public int latencyMs;
+
+    @Param({"16"})
+    public int payloadKb;
+
+    private WfsStubServer stub;
+    private File dir;
+    private File projectFile;
+    private TestResultCollector collector;
+
+    @Setup(Level.Trial)
+    public void createProject() throws Exception {
+        SoapUI.setSoapUICore(IISoapUICore.createDefault(), true);
+        stub = new WfsStubServer(latencyMs, payloadKb);
+        final String endpoint = stub.getEndpoint() + "?service=WFS&version=2.0.0&request=GetFeature"
+                + "&typeNames=stub:Place";
+        final WsdlProject project = new WsdlProject();
+        project.setName("End to end benchmark");
+        for (int s = 0; s < testSuites; s++) {
+            final WsdlTestSuite suite = project.addNewTestSuite("TS " + s);
+            for (int c = 0; c < testCasesPerSuite; c++) {
+                final WsdlTestCase testCase = suite.addNewTestCase("TC " + c);
+                testCase.addTestStep(HttpRequestStepFactory.HTTPREQUEST_TYPE, "Request", endpoint, "GET");
+            }
+        }
+        dir = BenchmarkSupport.tempDir("end-to-end");
+        projectFile = new File(dir, "end-to-end-soapui-project.xml");
+        project.saveIn(projectFile);
+        project.release();
+        collector = BenchmarkSupport.noopCollector();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopStub() {
+        stub.close();
+        BenchmarkSupport.delete(dir);
+    }
+
+    @Benchmark
+    public boolean run() throws Exception {
+        final STestCaseRunner runner = new STestCaseRunner(new SuiTestTaskProgress());
+        runner.setEnableUI(false);
+        runner.setProjectFile(projectFile.getAbsolutePath());
+        runner.setOutputFolder(dir.getAbsolutePath());
+        runner.setParallelWorkers(parallelWorkers);
+        final WsdlProject project = runner.initProject(collector);
+        try {
+            return runner.runRunner();
+        } finally {
+            project.release();
+        }
+    }
+}
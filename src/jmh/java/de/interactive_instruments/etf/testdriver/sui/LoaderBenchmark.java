@@ -0,0 +1,104 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import com.eviware.soapui.SoapUI;
+
+import org.openjdk.jmh.annotations.*;
+
+import de.interactive_instruments.etf.test.DataStorageTestUtils;
+
+/**
+ * Measures the work the {@link SuiFileLoader} waits for in <code>doPrepare()</code> (content hash and project
+ * header) and in <code>doBuild()</code> (parsing and mapping the project), run on the {@link SuiLoadPipeline}.
+ *
+ * With <code>etsCache=cold</code> the Executable Test Suite cache is emptied before each invocation, so the project
+ * is parsed, with <code>warm</code> the mapped Executable Test Suite is read from the cache.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoaderBenchmark {
+
+    @Param({BenchmarkSupport.DEFAULT_PROJECT_FILE})
+    public String projectFile;
+
+    @Param({"cold", "warm"})
+    public String etsCache;
+
+    private File file;
+    private File cacheDir;
+    private SuiLoadPipeline pipeline;
+
+    @Setup(Level.Trial)
+    public void createPipeline() throws Exception {
+        SoapUI.setSoapUICore(IISoapUICore.createDefault(), true);
+        file = BenchmarkSupport.projectFile(projectFile);
+        cacheDir = BenchmarkSupport.tempDir("ets-cache");
+        pipeline = new SuiLoadPipeline(1, new SuiEtsCache(cacheDir),
+                new SuiDtoLookup(DataStorageTestUtils.inMemoryStorage()));
+        // fill the cache
+        pipeline.submit(file).awaitParsed();
+    }
+
+    @Setup(Level.Invocation)
+    public void emptyCache() {
+        if ("cold".equals(etsCache)) {
+            for (final File entry : cacheDir.listFiles()) {
+                entry.delete();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void releasePipeline() {
+        pipeline.release();
+        BenchmarkSupport.delete(cacheDir);
+    }
+
+    @Benchmark
+    public Object prepare() throws Exception {
+        final SuiLoadPipeline.Work work = pipeline.submit(file);
+        work.awaitPrepared();
+        // as doBuild() does for unchanged files
+        work.cancel();
+        return work.getHeader();
+    }
+
+    @Benchmark
+    public Object prepareAndBuild() throws Exception {
+        final SuiLoadPipeline.Work work = pipeline.submit(file);
+        work.awaitPrepared();
+        final SuiLoadPipeline.Work parsed = work.awaitParsed();
+        if (parsed.getTemplate() != null) {
+            parsed.getTemplate().release();
+        }
+        return parsed.getExecutableTestSuite();
+    }
+}
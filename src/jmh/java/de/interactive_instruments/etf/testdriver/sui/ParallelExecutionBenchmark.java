@@ -0,0 +1,129 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+import com.eviware.soapui.SoapUI;
+import com.eviware.soapui.impl.wsdl.WsdlProject;
+import com.eviware.soapui.impl.wsdl.WsdlTestSuite;
+import com.eviware.soapui.impl.wsdl.testcase.WsdlProjectRunner;
+import com.eviware.soapui.impl.wsdl.testcase.WsdlTestCase;
+import com.eviware.soapui.impl.wsdl.teststeps.WsdlGroovyScriptTestStep;
+import com.eviware.soapui.impl.wsdl.teststeps.registry.GroovyScriptStepFactory;
+import com.eviware.soapui.model.testsuite.TestRunner;
+import com.eviware.soapui.support.types.StringToObjectMap;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares the execution of a project with blocking test steps by SoapUI's project runner and by the
+ * {@link ParallelSuiteRunner} on platform and virtual threads.
+ *
+ * The test steps sleep to simulate waiting for the test object. The peak number of live threads of each iteration
+ * is reported as the secondary result <code>peakLiveThreads</code>.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParallelExecutionBenchmark {
+
+    @Param({"16", "256"})
+    public int testSuites;
+
+    @Param({"4"})
+    public int testCasesPerSuite;
+
+    @Param({"20"})
+    public int stepLatencyMs;
+
+    private WsdlProject project;
+    private final static ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ThreadCount {
+        public long peakLiveThreads;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            peakLiveThreads = 0;
+            threads.resetPeakThreadCount();
+        }
+
+        void update() {
+            peakLiveThreads = Math.max(peakLiveThreads, threads.getPeakThreadCount());
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void createProject() throws Exception {
+        SoapUI.setSoapUICore(IISoapUICore.createDefault(), true);
+        project = new WsdlProject();
+        for (int s = 0; s < testSuites; s++) {
+            final WsdlTestSuite suite = project.addNewTestSuite("TS " + s);
+            for (int c = 0; c < testCasesPerSuite; c++) {
+                final WsdlTestCase testCase = suite.addNewTestCase("TC " + c);
+                final WsdlGroovyScriptTestStep step = (WsdlGroovyScriptTestStep) testCase
+                        .addTestStep(GroovyScriptStepFactory.GROOVY_TYPE, "Request");
+                step.setScript("sleep(" + stepLatencyMs + ")");
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void releaseProject() {
+        project.release();
+    }
+
+    @Benchmark
+    public Object projectRun(final ThreadCount threadCount) {
+        final WsdlProjectRunner runner = project.run(new StringToObjectMap(), false);
+        threadCount.update();
+        return runner.getStatus();
+    }
+
+    @Benchmark
+    public boolean platformThreads(final ThreadCount threadCount) {
+        return runParallel(false, threadCount);
+    }
+
+    @Benchmark
+    public boolean virtualThreads(final ThreadCount threadCount) {
+        return runParallel(true, threadCount);
+    }
+
+    private boolean runParallel(final boolean virtual, final ThreadCount threadCount) {
+        final ParallelSuiteRunner runner = new ParallelSuiteRunner(project, new OrderedEventRelay(), testSuites,
+                testCasesPerSuite, virtual);
+        final WsdlProjectRunner projectRunner = runner.newProjectRunner();
+        projectRunner.start(false);
+        threadCount.update();
+        return runner.isFailed() || projectRunner.getStatus() == TestRunner.Status.FAILED;
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import com.eviware.soapui.SoapUI;
+import com.eviware.soapui.impl.wsdl.WsdlProject;
+
+import org.openjdk.jmh.annotations.*;
+
+import de.interactive_instruments.etf.testdriver.TestResultCollector;
+
+/**
+ * Measures {@link STestCaseRunner#initProject(TestResultCollector)} for a test task, with the project parsed from
+ * the file (<code>source=file</code>) or created from a cached {@link SuiProjectTemplate}
+ * (<code>source=template</code>).
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProjectInitBenchmark {
+
+    @Param({BenchmarkSupport.DEFAULT_PROJECT_FILE})
+    public String projectFile;
+
+    @Param({"file", "template"})
+    public String source;
+
+    private File file;
+    private File outputDir;
+    private SuiProjectTemplate template;
+    private TestResultCollector collector;
+
+    @Setup(Level.Trial)
+    public void parseTemplate() throws Exception {
+        SoapUI.setSoapUICore(IISoapUICore.createDefault(), true);
+        file = BenchmarkSupport.projectFile(projectFile);
+        outputDir = BenchmarkSupport.tempDir("output");
+        collector = BenchmarkSupport.noopCollector();
+        if ("template".equals(source)) {
+            template = SuiProjectTemplate.parse(file);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void releaseTemplate() {
+        if (template != null) {
+            template.release();
+        }
+        BenchmarkSupport.delete(outputDir);
+    }
+
+    @Benchmark
+    public int initProject() throws Exception {
+        final STestCaseRunner runner = new STestCaseRunner(new SuiTestTaskProgress());
+        runner.setEnableUI(false);
+        runner.setProjectFile(file.getAbsolutePath());
+        runner.setOutputFolder(outputDir.getAbsolutePath());
+        if (template != null) {
+            runner.setProjectTemplate(template);
+        }
+        final WsdlProject project = runner.initProject(collector);
+        final int testSuites = project.getTestSuiteCount();
+        project.release();
+        return testSuites;
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.util.concurrent.TimeUnit;
+
+import com.eviware.soapui.SoapUI;
+import com.eviware.soapui.impl.wsdl.WsdlProject;
+import com.eviware.soapui.impl.wsdl.testcase.WsdlTestCase;
+import com.eviware.soapui.impl.wsdl.testcase.WsdlTestCaseRunner;
+import com.eviware.soapui.impl.wsdl.testcase.WsdlTestRunContext;
+import com.eviware.soapui.impl.wsdl.teststeps.WsdlGroovyScriptTestStep;
+import com.eviware.soapui.impl.wsdl.teststeps.WsdlTestStepResult;
+import com.eviware.soapui.impl.wsdl.teststeps.registry.GroovyScriptStepFactory;
+import com.eviware.soapui.model.testsuite.TestRunListener;
+import com.eviware.soapui.model.testsuite.TestStep;
+import com.eviware.soapui.support.types.StringToObjectMap;
+
+import org.apache.log4j.Logger;
+import org.openjdk.jmh.annotations.*;
+
+import de.interactive_instruments.etf.sel.mapping.TestRunCollector;
+
+/**
+ * Measures the step listener callbacks of the {@link STestCaseRunner} against the previous implementation, which
+ * built the run count key, boxed the run count and concatenated the log messages on every call.
+ *
+ * Run with the GC profiler to compare the allocation rate per operation:
+ * <code>gradlew jmh -Pjmh.includes=StepListenerBenchmark -Pjmh.args="-prof gc"</code>. The messages are only
+ * skipped if INFO is disabled in the logging configuration of the benchmark classpath.
+ *
+ * The <code>chain</code> benchmark calls all listeners a test task registers for a test case, with a collector
+ * that discards the results.
+ *
+ * The run count is reset before each invocation, so every invocation measures the first run of the step. Steps that
+ * run more than 127 times in a test case box a new Long per run in all implementations. The previous implementation
+ * used the deprecated Long constructor, which is replaced with Long.valueOf here.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StepListenerBenchmark {
+
+    private final static Logger log = Logger.getLogger(StepListenerBenchmark.class);
+
+    private WsdlProject project;
+    private WsdlTestCaseRunner testCaseRunner;
+    private WsdlTestRunContext runContext;
+    private WsdlTestStepResult result;
+    private WsdlGroovyScriptTestStep step;
+    private STestCaseRunner runner;
+    private TestRunListener[] listeners;
+
+    @Setup(Level.Trial)
+    public void createProject() {
+        SoapUI.setSoapUICore(IISoapUICore.createDefault(), true);
+        project = new WsdlProject();
+        final WsdlTestCase testCase = project.addNewTestSuite("TS").addNewTestCase("TC");
+        step = (WsdlGroovyScriptTestStep) testCase.addTestStep(GroovyScriptStepFactory.GROOVY_TYPE, "Step");
+        testCaseRunner = new WsdlTestCaseRunner(testCase, new StringToObjectMap());
+        runContext = testCaseRunner.getRunContext();
+        runContext.setCurrentStep(0);
+        result = new WsdlTestStepResult(step);
+        runner = new STestCaseRunner(new SuiTestTaskProgress());
+        listeners = new TestRunListener[]{runner, new OrderedTestRunListener(
+                new TestRunCollector(BenchmarkSupport.noopCollector()), new OrderedEventRelay())};
+        listeners[1].beforeRun(testCaseRunner, runContext);
+    }
+
+    @Setup(Level.Invocation)
+    public void resetRunCount() {
+        runContext.removeProperty(step.getName() + " run count");
+    }
+
+    @TearDown(Level.Trial)
+    public void releaseProject() {
+        project.release();
+    }
+
+    @Benchmark
+    public void current() {
+        runner.beforeStep(testCaseRunner, runContext, step);
+        runner.afterStep(testCaseRunner, runContext, result);
+    }
+
+    @Benchmark
+    public void chain() {
+        for (final TestRunListener listener : listeners) {
+            listener.beforeStep(testCaseRunner, runContext, step);
+        }
+        for (final TestRunListener listener : listeners) {
+            listener.afterStep(testCaseRunner, runContext, result);
+        }
+    }
+
+    @Benchmark
+    public void previous() {
+        final TestStep currentStep = runContext.getCurrentStep();
+        log.info("running step [" + currentStep.getName() + "]");
+        final String countPropertyName = currentStep.getName() + " run count";
+        Long count = (Long) runContext.getProperty(countPropertyName);
+        if (count == null) {
+            count = Long.valueOf(0);
+        }
+        runContext.setProperty(countPropertyName, Long.valueOf(count.longValue() + 1));
+    }
+}
@@ -0,0 +1,229 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.*;
+
+import com.eviware.soapui.model.testsuite.*;
+
+/**
+ * Creates views of the SoapUI run state that can be passed to a listener after the test case has moved on.
+ *
+ * The views implement the public interfaces of the live objects. Values that change while a test case is running,
+ * like the current step, the status of the runner or the status of assertions, are taken when the view is created,
+ * all other methods are forwarded to the live object. Step results are not changed by the runner after the step has
+ * completed and are passed on as they are; the relay keeps them only until the preceding items have completed.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class EventSnapshots {
+
+    private final static Set<String> RUNNER_VALUES = new HashSet<>(Arrays.asList(
+            "getStatus", "getReason", "getTimeTaken", "getStartTime", "isRunning", "isCanceled", "isFailed"));
+
+    private final static Set<String> ASSERTABLE_VALUES = new HashSet<>(Arrays.asList(
+            "getAssertionStatus", "getAssertionCount", "getAssertionList"));
+
+    private final static Set<String> ASSERTION_VALUES = new HashSet<>(Arrays.asList(
+            "getStatus", "getErrors", "isFailed", "isDisabled"));
+
+    private EventSnapshots() {}
+
+    /**
+     * @return a view of the runner and its run context
+     */
+    static TestCaseRunner runner(final TestCaseRunner runner, final TestCaseRunContext runContext) {
+        if (runner == null) {
+            return null;
+        }
+        final Map<String, Object> values = capture(runner, RUNNER_VALUES);
+        final TestCaseRunContext context = context(runContext);
+        return view(runner, TestCaseRunner.class, (method, args) -> {
+            if (values.containsKey(method.getName()) && method.getParameterCount() == 0) {
+                return values.get(method.getName());
+            } else if ("getRunContext".equals(method.getName()) && method.getParameterCount() == 0) {
+                return context;
+            }
+            return invoke(runner, method, args);
+        });
+    }
+
+    /**
+     * @return a view of the run context with the step that is currently executed
+     */
+    static TestCaseRunContext context(final TestCaseRunContext runContext) {
+        if (runContext == null) {
+            return null;
+        }
+        final TestStep currentStep = step(runContext.getCurrentStep());
+        final int currentStepIndex = runContext.getCurrentStepIndex();
+        return view(runContext, TestCaseRunContext.class, (method, args) -> {
+            if ("getCurrentStep".equals(method.getName()) && method.getParameterCount() == 0) {
+                return currentStep;
+            } else if ("getCurrentStepIndex".equals(method.getName()) && method.getParameterCount() == 0) {
+                return currentStepIndex;
+            }
+            return invoke(runContext, method, args);
+        });
+    }
+
+    /**
+     * @return a view of the step with the current state of its assertions
+     */
+    static TestStep step(final TestStep testStep) {
+        if (testStep == null || !hasInterface(testStep.getClass(), "com.eviware.soapui.model.testsuite.Assertable")) {
+            return testStep;
+        }
+        final Map<String, Object> values = capture(testStep, ASSERTABLE_VALUES);
+        final Object assertions = values.get("getAssertionList");
+        if (assertions instanceof List) {
+            final List<Object> views = new ArrayList<>(((List<?>) assertions).size());
+            for (final Object assertion : (List<?>) assertions) {
+                views.add(assertion instanceof TestAssertion ? assertion((TestAssertion) assertion) : assertion);
+            }
+            values.put("getAssertionList", Collections.unmodifiableList(views));
+        }
+        return view(testStep, TestStep.class, (method, args) -> {
+            if (values.containsKey(method.getName()) && method.getParameterCount() == 0) {
+                return values.get(method.getName());
+            } else if ("getAssertionAt".equals(method.getName()) && method.getParameterCount() == 1
+                    && values.get("getAssertionList") instanceof List) {
+                return ((List<?>) values.get("getAssertionList")).get((Integer) args[0]);
+            }
+            return invoke(testStep, method, args);
+        });
+    }
+
+    /**
+     * @return a view of the assertion with its current status and errors
+     */
+    private static TestAssertion assertion(final TestAssertion assertion) {
+        final Map<String, Object> values = capture(assertion, ASSERTION_VALUES);
+        return view(assertion, TestAssertion.class, (method, args) -> {
+            if (values.containsKey(method.getName()) && method.getParameterCount() == 0) {
+                return values.get(method.getName());
+            }
+            return invoke(assertion, method, args);
+        });
+    }
+
+    private static Map<String, Object> capture(final Object live, final Set<String> names) {
+        final Map<String, Object> values = new HashMap<>();
+        for (final Class<?> i : interfaces(live.getClass())) {
+            for (final Method method : i.getMethods()) {
+                if (method.getParameterCount() == 0 && names.contains(method.getName())
+                        && !values.containsKey(method.getName())) {
+                    try {
+                        values.put(method.getName(), method.invoke(live));
+                    } catch (final InvocationTargetException | IllegalAccessException | RuntimeException ignore) {
+                        // not captured, the view forwards the call to the live object
+                    }
+                }
+            }
+        }
+        return values;
+    }
+
+    private interface Handler {
+        Object invoke(final Method method, final Object[] args) throws Throwable;
+    }
+
+    private static <T> T view(final T live, final Class<T> type, final Handler handler) {
+        final Class<?>[] interfaces = interfaces(live.getClass()).toArray(new Class<?>[0]);
+        try {
+            return type.cast(Proxy.newProxyInstance(live.getClass().getClassLoader(), interfaces,
+                    new View(live, handler)));
+        } catch (final IllegalArgumentException | ClassCastException e) {
+            // interfaces not visible, pass the live object
+            return live;
+        }
+    }
+
+    /**
+     * Forwards the methods of Object to the live object
+     */
+    private final static class View implements InvocationHandler {
+        private final Object live;
+        private final Handler handler;
+
+        private View(final Object live, final Handler handler) {
+            this.live = live;
+            this.handler = handler;
+        }
+
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                if ("equals".equals(method.getName())) {
+                    return live.equals(unwrap(args[0]));
+                }
+                return EventSnapshots.invoke(live, method, args);
+            }
+            return handler.invoke(method, args);
+        }
+    }
+
+    private static Object unwrap(final Object object) {
+        if (object != null && Proxy.isProxyClass(object.getClass())
+                && Proxy.getInvocationHandler(object) instanceof View) {
+            return ((View) Proxy.getInvocationHandler(object)).live;
+        }
+        return object;
+    }
+
+    private static Object invoke(final Object live, final Method method, final Object[] args) throws Throwable {
+        try {
+            return method.invoke(live, args);
+        } catch (final InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static boolean hasInterface(final Class<?> type, final String name) {
+        for (final Class<?> i : interfaces(type)) {
+            if (i.getName().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Set<Class<?>> interfaces(final Class<?> type) {
+        final Set<Class<?>> interfaces = new LinkedHashSet<>();
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            collect(c.getInterfaces(), interfaces);
+        }
+        return interfaces;
+    }
+
+    private static void collect(final Class<?>[] candidates, final Set<Class<?>> interfaces) {
+        for (final Class<?> i : candidates) {
+            if (Modifier.isPublic(i.getModifiers()) && interfaces.add(i)) {
+                collect(i.getInterfaces(), interfaces);
+            }
+        }
+    }
+}
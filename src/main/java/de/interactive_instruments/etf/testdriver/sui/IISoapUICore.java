@@ -21,9 +21,15 @@
 package de.interactive_instruments.etf.testdriver.sui;
 
 import java.io.*;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.net.MalformedURLException;
 import java.security.GeneralSecurityException;
+import java.util.List;
 import java.util.TimerTask;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 import javax.swing.*;
 
@@ -37,6 +43,7 @@ import com.eviware.soapui.impl.wsdl.support.http.HttpClientSupport;
 import com.eviware.soapui.impl.wsdl.support.soap.SoapVersion;
 import com.eviware.soapui.model.propertyexpansion.PropertyExpansionUtils;
 import com.eviware.soapui.model.settings.Settings;
+import com.eviware.soapui.model.settings.SettingsListener;
 import com.eviware.soapui.monitor.MockEngine;
 import com.eviware.soapui.security.registry.SecurityScanRegistry;
 import com.eviware.soapui.settings.*;
@@ -53,6 +60,18 @@ import org.slf4j.Logger;
 /**
  * Initializes core objects. Adapter for the SoapUICore based on the command line runner SoapUICore.
  *
+ * The core is shared by all test tasks of the driver. The settings are built completely, including the settings of
+ * the driver passed to {@link #createDefault(Consumer)}, before they are published as a new snapshot, so concurrently
+ * running tasks never see partially initialized settings. The settings returned by {@link #getSettings()} are a
+ * view of the current snapshot. A modification through the view is applied to a copy of the snapshot, which is then
+ * published as the new snapshot, so it is never visible half way and affects all tasks.
+ *
+ * Task specific settings must be set on the project settings, see
+ * {@link STestCaseRunner#setSettingsOverrides(java.util.Map)}. Only settings that SoapUI reads from the project or
+ * its model items can be overridden this way. The transport settings, like the connection pool, proxy and SSL
+ * settings, are read by HttpClientSupport from the global settings for the HTTP client that is shared by all tasks.
+ * Registries are lazily initialized once.
+ *
  * @author ole.matzura
  *
  * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
@@ -61,23 +80,27 @@ import org.slf4j.Logger;
 class IISoapUICore implements SoapUICore {
     public static Logger log;
 
-    private boolean logIsInitialized;
-    private String root;
-    protected SoapuiSettingsDocumentConfig settingsDocument;
+    private volatile boolean logIsInitialized;
+    private volatile String root;
+    protected volatile SoapuiSettingsDocumentConfig settingsDocument;
     private volatile MockEngine mockEngine;
-    private XmlBeansSettingsImpl settings;
-    private SoapUIListenerRegistry listenerRegistry;
-    private SoapUIActionRegistry actionRegistry;
-    private SoapUIFactoryRegistry factoryRegistry;
-    private long lastSettingsLoad = 0;
-
-    private String settingsFile;
-    private String password;
-    protected boolean initialImport;
+    private volatile XmlBeansSettingsImpl settings;
+    private volatile Settings settingsView;
+    // listeners registered through the view, moved to each new snapshot
+    private final List<SettingsListener> settingsListeners = new CopyOnWriteArrayList<>();
+    private volatile Consumer<Settings> settingsCustomizer;
+    private volatile SoapUIListenerRegistry listenerRegistry;
+    private volatile SoapUIActionRegistry actionRegistry;
+    private volatile SoapUIFactoryRegistry factoryRegistry;
+    private volatile long lastSettingsLoad = 0;
+
+    private volatile String settingsFile;
+    private volatile String password;
+    protected volatile boolean initialImport;
     private TimerTask settingsWatcher;
-    private SoapUIExtensionClassLoader extClassLoader;
+    private volatile SoapUIExtensionClassLoader extClassLoader;
 
-    public boolean isSavingSettings;
+    public volatile boolean isSavingSettings;
 
     public boolean getInitialImport() {
         return initialImport;
@@ -91,6 +114,18 @@ class IISoapUICore implements SoapUICore {
         return new IISoapUICore(null, DEFAULT_SETTINGS_FILE);
     }
 
+    /**
+     * Creates a core with additional settings
+     *
+     * @param settingsCustomizer
+     *            sets the settings of the driver, called each time the settings are initialized, before they are
+     *            published
+     * @return the core
+     */
+    public static IISoapUICore createDefault(final Consumer<Settings> settingsCustomizer) {
+        return new IISoapUICore(null, DEFAULT_SETTINGS_FILE, settingsCustomizer);
+    }
+
     public IISoapUICore() {}
 
     /*
@@ -110,6 +145,12 @@ class IISoapUICore implements SoapUICore {
         init(settingsFile);
     }
 
+    private IISoapUICore(String root, String settingsFile, Consumer<Settings> settingsCustomizer) {
+        this(root);
+        this.settingsCustomizer = settingsCustomizer;
+        init(settingsFile);
+    }
+
     public IISoapUICore(String root, String settingsFile, String password) {
         this(root);
         this.password = password;
@@ -145,11 +186,12 @@ class IISoapUICore implements SoapUICore {
         return root;
     }
 
-    protected Settings initSettings(String fileName) {
+    protected synchronized Settings initSettings(String fileName) {
         // TODO Why try to load settings from current directory before using root?
         // This caused a bug in Eclipse:
         // https://sourceforge.net/tracker/?func=detail&atid=737763&aid=2620284&group_id=136013
         File settingsFile = new File(fileName).exists() ? new File(fileName) : null;
+        SoapuiSettingsDocumentConfig settingsDocument = this.settingsDocument;
 
         try {
             if (settingsFile == null) {
@@ -214,6 +256,9 @@ class IISoapUICore implements SoapUICore {
             lastSettingsLoad = 0;
         }
 
+        // Build the new snapshot on a copy, the current one may be in use by running tasks
+        settingsDocument = (SoapuiSettingsDocumentConfig) settingsDocument.copy();
+        final XmlBeansSettingsImpl settings;
         if (settingsDocument.getSoapuiSettings() == null) {
             settingsDocument.addNewSoapuiSettings();
             settings = new XmlBeansSettingsImpl(null, null, settingsDocument.getSoapuiSettings());
@@ -223,8 +268,6 @@ class IISoapUICore implements SoapUICore {
             settings = new XmlBeansSettingsImpl(null, null, settingsDocument.getSoapuiSettings());
         }
 
-        this.settingsFile = settingsFile.getAbsolutePath();
-
         if (!settings.isSet(WsdlSettings.EXCLUDED_TYPES)) {
             StringList list = new StringList();
             list.add("schema@http://www.w3.org/2001/XMLSchema");
@@ -236,35 +279,35 @@ class IISoapUICore implements SoapUICore {
             settings.setString(HttpSettings.HTTP_VERSION, HttpSettings.HTTP_VERSION_1_1);
         }
 
-        setIfNotSet(WsdlSettings.NAME_WITH_BINDING, true);
-        setIfNotSet(WsdlSettings.NAME_WITH_BINDING, 500);
-        setIfNotSet(HttpSettings.HTTP_VERSION, HttpSettings.HTTP_VERSION_1_1);
-        setIfNotSet(HttpSettings.MAX_TOTAL_CONNECTIONS, 2000);
-        setIfNotSet(HttpSettings.RESPONSE_COMPRESSION, true);
-        setIfNotSet(HttpSettings.LEAVE_MOCKENGINE, true);
-        setIfNotSet(UISettings.AUTO_SAVE_PROJECTS_ON_EXIT, true);
-        setIfNotSet(UISettings.SHOW_DESCRIPTIONS, true);
-        setIfNotSet(WsdlSettings.XML_GENERATION_ALWAYS_INCLUDE_OPTIONAL_ELEMENTS, true);
-        setIfNotSet(WsaSettings.USE_DEFAULT_RELATES_TO, true);
-        setIfNotSet(WsaSettings.USE_DEFAULT_RELATIONSHIP_TYPE, true);
-        setIfNotSet(UISettings.SHOW_STARTUP_PAGE, true);
-        setIfNotSet(UISettings.GC_INTERVAL, "60");
-        setIfNotSet(WsdlSettings.CACHE_WSDLS, true);
-        setIfNotSet(WsdlSettings.PRETTY_PRINT_RESPONSE_MESSAGES, true);
-        setIfNotSet(HttpSettings.RESPONSE_COMPRESSION, true);
-        setIfNotSet(HttpSettings.INCLUDE_REQUEST_IN_TIME_TAKEN, true);
-        setIfNotSet(HttpSettings.INCLUDE_RESPONSE_IN_TIME_TAKEN, true);
-        setIfNotSet(HttpSettings.LEAVE_MOCKENGINE, true);
-        setIfNotSet(HttpSettings.START_MOCK_SERVICE, true);
-        setIfNotSet(UISettings.AUTO_SAVE_INTERVAL, "0");
-        setIfNotSet(UISettings.GC_INTERVAL, "60");
-        setIfNotSet(UISettings.SHOW_STARTUP_PAGE, true);
-        setIfNotSet(WsaSettings.SOAP_ACTION_OVERRIDES_WSA_ACTION, false);
-        setIfNotSet(WsaSettings.USE_DEFAULT_RELATIONSHIP_TYPE, true);
-        setIfNotSet(WsaSettings.USE_DEFAULT_RELATES_TO, true);
-        setIfNotSet(WsaSettings.OVERRIDE_EXISTING_HEADERS, false);
-        setIfNotSet(WsaSettings.ENABLE_FOR_OPTIONAL, false);
-        setIfNotSet(VersionUpdateSettings.AUTO_CHECK_VERSION_UPDATE, true);
+        setIfNotSet(settings, WsdlSettings.NAME_WITH_BINDING, true);
+        setIfNotSet(settings, WsdlSettings.NAME_WITH_BINDING, 500);
+        setIfNotSet(settings, HttpSettings.HTTP_VERSION, HttpSettings.HTTP_VERSION_1_1);
+        setIfNotSet(settings, HttpSettings.MAX_TOTAL_CONNECTIONS, 2000);
+        setIfNotSet(settings, HttpSettings.RESPONSE_COMPRESSION, true);
+        setIfNotSet(settings, HttpSettings.LEAVE_MOCKENGINE, true);
+        setIfNotSet(settings, UISettings.AUTO_SAVE_PROJECTS_ON_EXIT, true);
+        setIfNotSet(settings, UISettings.SHOW_DESCRIPTIONS, true);
+        setIfNotSet(settings, WsdlSettings.XML_GENERATION_ALWAYS_INCLUDE_OPTIONAL_ELEMENTS, true);
+        setIfNotSet(settings, WsaSettings.USE_DEFAULT_RELATES_TO, true);
+        setIfNotSet(settings, WsaSettings.USE_DEFAULT_RELATIONSHIP_TYPE, true);
+        setIfNotSet(settings, UISettings.SHOW_STARTUP_PAGE, true);
+        setIfNotSet(settings, UISettings.GC_INTERVAL, "60");
+        setIfNotSet(settings, WsdlSettings.CACHE_WSDLS, true);
+        setIfNotSet(settings, WsdlSettings.PRETTY_PRINT_RESPONSE_MESSAGES, true);
+        setIfNotSet(settings, HttpSettings.RESPONSE_COMPRESSION, true);
+        setIfNotSet(settings, HttpSettings.INCLUDE_REQUEST_IN_TIME_TAKEN, true);
+        setIfNotSet(settings, HttpSettings.INCLUDE_RESPONSE_IN_TIME_TAKEN, true);
+        setIfNotSet(settings, HttpSettings.LEAVE_MOCKENGINE, true);
+        setIfNotSet(settings, HttpSettings.START_MOCK_SERVICE, true);
+        setIfNotSet(settings, UISettings.AUTO_SAVE_INTERVAL, "0");
+        setIfNotSet(settings, UISettings.GC_INTERVAL, "60");
+        setIfNotSet(settings, UISettings.SHOW_STARTUP_PAGE, true);
+        setIfNotSet(settings, WsaSettings.SOAP_ACTION_OVERRIDES_WSA_ACTION, false);
+        setIfNotSet(settings, WsaSettings.USE_DEFAULT_RELATIONSHIP_TYPE, true);
+        setIfNotSet(settings, WsaSettings.USE_DEFAULT_RELATES_TO, true);
+        setIfNotSet(settings, WsaSettings.OVERRIDE_EXISTING_HEADERS, false);
+        setIfNotSet(settings, WsaSettings.ENABLE_FOR_OPTIONAL, false);
+        setIfNotSet(settings, VersionUpdateSettings.AUTO_CHECK_VERSION_UPDATE, true);
         if (!settings.isSet(ProxySettings.AUTO_PROXY) && !settings.isSet(ProxySettings.ENABLE_PROXY)) {
             settings.setBoolean(ProxySettings.AUTO_PROXY, true);
             settings.setBoolean(ProxySettings.ENABLE_PROXY, true);
@@ -284,22 +327,80 @@ class IISoapUICore implements SoapUICore {
             String wsiDir = System.getProperty("wsi.dir", new File(".").getAbsolutePath());
             settings.setString(WSISettings.WSI_LOCATION, wsiDir);
         }
+        final Consumer<Settings> customizer = settingsCustomizer;
+        if (customizer != null) {
+            customizer.accept(settings);
+        }
+        addListeners(settings);
+
+        // publish, the view reads the settings field
+        this.settingsDocument = settingsDocument;
+        this.settingsFile = settingsFile.getAbsolutePath();
+        this.settings = settings;
+        if (settingsView == null) {
+            settingsView = newSettingsView();
+        }
+        return settingsView;
+    }
+
+    private void addListeners(final XmlBeansSettingsImpl settings) {
         HttpClientSupport.addSSLListener(settings);
+        for (final SettingsListener listener : settingsListeners) {
+            settings.addSettingsListener(listener);
+        }
+    }
+
+    /**
+     * Settings view that reads from the current snapshot and publishes a modified copy on each modification
+     */
+    private Settings newSettingsView() {
+        return (Settings) Proxy.newProxyInstance(Settings.class.getClassLoader(), new Class<?>[]{Settings.class},
+                (proxy, method, args) -> {
+                    final String name = method.getName();
+                    if ((name.startsWith("set") || name.startsWith("clear")) && method.getReturnType() == void.class) {
+                        copyOnWrite(method, args);
+                        return null;
+                    } else if (name.equals("addSettingsListener")) {
+                        settingsListeners.add((SettingsListener) args[0]);
+                    } else if (name.equals("removeSettingsListener")) {
+                        settingsListeners.remove(args[0]);
+                    } else if (name.equals("equals") && args != null && args.length == 1) {
+                        return proxy == args[0];
+                    } else if (name.equals("hashCode") && (args == null || args.length == 0)) {
+                        return System.identityHashCode(proxy);
+                    }
+                    return invoke(settings, method, args);
+                });
+    }
 
-        return settings;
+    private synchronized void copyOnWrite(final Method method, final Object[] args) throws Throwable {
+        final SoapuiSettingsDocumentConfig document = (SoapuiSettingsDocumentConfig) settingsDocument.copy();
+        final XmlBeansSettingsImpl copy = new XmlBeansSettingsImpl(null, null, document.getSoapuiSettings());
+        addListeners(copy);
+        invoke(copy, method, args);
+        this.settingsDocument = document;
+        this.settings = copy;
+    }
+
+    private static Object invoke(final Settings settings, final Method method, final Object[] args) throws Throwable {
+        try {
+            return method.invoke(settings, args);
+        } catch (final InvocationTargetException e) {
+            throw e.getCause();
+        }
     }
 
-    private void setIfNotSet(String id, boolean value) {
+    private static void setIfNotSet(Settings settings, String id, boolean value) {
         if (!settings.isSet(id))
             settings.setBoolean(id, true);
     }
 
-    private void setIfNotSet(String id, String value) {
+    private static void setIfNotSet(Settings settings, String id, String value) {
         if (!settings.isSet(id))
             settings.setString(id, value);
     }
 
-    private void setIfNotSet(String id, long value) {
+    private static void setIfNotSet(Settings settings, String id, long value) {
         if (!settings.isSet(id))
             settings.setLong(id, value);
     }
@@ -323,11 +424,16 @@ class IISoapUICore implements SoapUICore {
      * @see com.eviware.soapui.SoapUICore#getSettings()
      */
     public Settings getSettings() {
-        if (settings == null) {
-            initSettings(DEFAULT_SETTINGS_FILE);
+        final Settings current = settingsView;
+        if (current == null) {
+            synchronized (this) {
+                if (settingsView == null) {
+                    initSettings(DEFAULT_SETTINGS_FILE);
+                }
+                return settingsView;
+            }
         }
-
-        return settings;
+        return current;
     }
 
     protected void initDefaultSettings(Settings settings2) {
@@ -339,7 +445,7 @@ class IISoapUICore implements SoapUICore {
      *
      * @see com.eviware.soapui.SoapUICore#saveSettings()
      */
-    public String saveSettings() throws Exception {
+    public synchronized String saveSettings() throws Exception {
         PropertyExpansionUtils.saveGlobalProperties();
         SecurityScanUtil.saveGlobalSecuritySettings();
         isSavingSettings = true;
@@ -393,7 +499,7 @@ class IISoapUICore implements SoapUICore {
         this.settingsFile = settingsFile;
     }
 
-    protected void initLog() {
+    protected synchronized void initLog() {
         if (!logIsInitialized) {
             logIsInitialized = true;
 
@@ -449,8 +555,12 @@ class IISoapUICore implements SoapUICore {
      * @see com.eviware.soapui.SoapUICore#getListenerRegistry()
      */
     public SoapUIListenerRegistry getListenerRegistry() {
-        if (listenerRegistry == null)
-            initListenerRegistry();
+        if (listenerRegistry == null) {
+            synchronized (this) {
+                if (listenerRegistry == null)
+                    initListenerRegistry();
+            }
+        }
 
         return listenerRegistry;
     }
@@ -465,8 +575,12 @@ class IISoapUICore implements SoapUICore {
      * @see com.eviware.soapui.SoapUICore#getActionRegistry()
      */
     public SoapUIActionRegistry getActionRegistry() {
-        if (actionRegistry == null)
-            actionRegistry = initActionRegistry();
+        if (actionRegistry == null) {
+            synchronized (this) {
+                if (actionRegistry == null)
+                    actionRegistry = initActionRegistry();
+            }
+        }
 
         return actionRegistry;
     }
@@ -482,8 +596,12 @@ class IISoapUICore implements SoapUICore {
 
     @Override
     public SoapUIFactoryRegistry getFactoryRegistry() {
-        if (factoryRegistry == null)
-            initFactoryRegistry();
+        if (factoryRegistry == null) {
+            synchronized (this) {
+                if (factoryRegistry == null)
+                    initFactoryRegistry();
+            }
+        }
 
         return factoryRegistry;
     }
@@ -0,0 +1,253 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Forwards listener events of concurrently executed model items in their declared order.
+ *
+ * The result collector expects the events of one test suite after another. Events of the item that is next in
+ * the declared order are forwarded immediately, events of all other items are buffered until all preceding
+ * items have completed. Keys that are not part of the current order and late events of items that have already
+ * been passed are forwarded immediately.
+ *
+ * Buffered events are replayed after the model item has moved on. Events that implement {@link Event} are
+ * therefore detached from the live state before they are buffered.
+ *
+ * The children of an item, i.e. the test cases of a test suite, can be ordered by a nested relay, which forwards
+ * the events to the parent relay under the key of the parent item.
+ *
+ * Forwarded events are queued in order and run outside of the locks of the relays, one at a time, by one of the
+ * threads that dispatch events.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class OrderedEventRelay {
+
+    /**
+     * An event that can be replayed later
+     */
+    interface Event extends Runnable {
+
+        /**
+         * Called on the thread that dispatches the event, before it is buffered
+         *
+         * @return an event that does not depend on state that changes after the event has been dispatched
+         */
+        Runnable detach();
+    }
+
+    private final Map<Object, Slot> slots = new IdentityHashMap<>();
+    private final Map<Object, Integer> positions = new IdentityHashMap<>();
+    private final Map<Object, OrderedEventRelay> children = new ConcurrentHashMap<>();
+    private final OrderedEventRelay parent;
+    private final OrderedEventRelay root;
+    private final Object parentKey;
+    private final Queue<Runnable> forwarded;
+    private final Object forwardLock = new Object();
+    private List<Object> order = Collections.emptyList();
+    private int head;
+
+    OrderedEventRelay() {
+        this(null, null);
+    }
+
+    private OrderedEventRelay(final OrderedEventRelay parent, final Object parentKey) {
+        this.parent = parent;
+        this.parentKey = parentKey;
+        this.root = parent != null ? parent.root : this;
+        this.forwarded = parent != null ? null : new ConcurrentLinkedQueue<>();
+    }
+
+    private final static class Slot {
+        private final List<Runnable> events = new ArrayList<>();
+        private boolean completed;
+    }
+
+    /**
+     * Start relaying events for the keys in the passed order
+     *
+     * @param keys
+     *            keys in declared order
+     */
+    synchronized void begin(final List<?> keys) {
+        if (head < order.size()) {
+            throw new IllegalStateException("Relay still in use");
+        }
+        slots.clear();
+        positions.clear();
+        order = new ArrayList<>(keys);
+        head = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            slots.put(keys.get(i), new Slot());
+            positions.put(keys.get(i), i);
+        }
+    }
+
+    /**
+     * Forward or buffer an event
+     *
+     * @param key
+     *            the model item the event belongs to
+     * @param event
+     *            the event
+     */
+    void dispatch(final Object key, final Runnable event) {
+        if (!offer(key, event)) {
+            // detach outside of the lock, only the thread of the item dispatches its events
+            buffer(key, event instanceof Event ? ((Event) event).detach() : event);
+        }
+        root.runForwarded();
+    }
+
+    /**
+     * Forward or buffer an event of a child item
+     *
+     * @param key
+     *            the child item the event belongs to
+     * @param parentKey
+     *            the item the child belongs to
+     * @param event
+     *            the event
+     */
+    void dispatch(final Object key, final Object parentKey, final Runnable event) {
+        final OrderedEventRelay child = children.get(key);
+        if (child != null) {
+            child.dispatch(key, event);
+        } else {
+            dispatch(parentKey, event);
+        }
+    }
+
+    /**
+     * Forward the event if it does not need to be buffered
+     *
+     * @return false if the event needs to be buffered
+     */
+    private synchronized boolean offer(final Object key, final Runnable event) {
+        if (isWaiting(key)) {
+            return false;
+        }
+        forward(event);
+        return true;
+    }
+
+    private synchronized void buffer(final Object key, final Runnable event) {
+        if (isWaiting(key)) {
+            slots.get(key).events.add(event);
+        } else {
+            // the preceding items completed in the meantime
+            forward(event);
+        }
+    }
+
+    /**
+     * @return true if the key belongs to an item after the head
+     */
+    private boolean isWaiting(final Object key) {
+        final Integer position = positions.get(key);
+        return position != null && position > head;
+    }
+
+    /**
+     * Order the events of the children of an item
+     *
+     * @param parentKey
+     *            the parent item
+     * @param childKeys
+     *            the children in declared order
+     * @return the relay for the children, which must be completed for each child
+     */
+    OrderedEventRelay nest(final Object parentKey, final List<?> childKeys) {
+        final OrderedEventRelay child = new OrderedEventRelay(this, parentKey);
+        child.begin(childKeys);
+        for (final Object childKey : childKeys) {
+            children.put(childKey, child);
+        }
+        return child;
+    }
+
+    void unnest(final List<?> childKeys) {
+        for (final Object childKey : childKeys) {
+            children.remove(childKey);
+        }
+    }
+
+    /**
+     * Mark the model item as completed. Buffered events of all following items are forwarded up to the next item
+     * that has not been completed yet.
+     *
+     * @param key
+     *            the model item
+     */
+    void complete(final Object key) {
+        completeSlot(key);
+        root.runForwarded();
+    }
+
+    private synchronized void completeSlot(final Object key) {
+        final Slot slot = slots.get(key);
+        if (slot == null) {
+            return;
+        }
+        slot.completed = true;
+        while (head < order.size()) {
+            final Slot headSlot = slots.get(order.get(head));
+            for (final Runnable event : headSlot.events) {
+                forward(event);
+            }
+            headSlot.events.clear();
+            if (!headSlot.completed) {
+                return;
+            }
+            head++;
+        }
+        slots.clear();
+    }
+
+    /**
+     * Called with the lock of this relay
+     */
+    private void forward(final Runnable event) {
+        if (parent != null) {
+            // the event has already been detached if this relay buffered it
+            if (!parent.offer(parentKey, event)) {
+                parent.buffer(parentKey, event instanceof Event ? ((Event) event).detach() : event);
+            }
+        } else {
+            forwarded.add(event);
+        }
+    }
+
+    /**
+     * Run the forwarded events in order, the events are run by one thread at a time
+     */
+    private void runForwarded() {
+        synchronized (forwardLock) {
+            for (Runnable event; (event = forwarded.poll()) != null;) {
+                event.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import com.eviware.soapui.model.support.TestRunListenerAdapter;
+import com.eviware.soapui.model.testsuite.*;
+
+/**
+ * Passes the events of a test case to the wrapped listener through the {@link OrderedEventRelay}, so that results
+ * of test suites and test cases that run in parallel are collected in declared order. Events that are buffered by
+ * the relay get a snapshot of the run state, see {@link EventSnapshots}.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class OrderedTestRunListener extends TestRunListenerAdapter {
+
+    private final TestRunListener delegate;
+    private final OrderedEventRelay relay;
+
+    OrderedTestRunListener(final TestRunListener delegate, final OrderedEventRelay relay) {
+        this.delegate = delegate;
+        this.relay = relay;
+    }
+
+    private void dispatch(final TestCaseRunner testRunner, final OrderedEventRelay.Event event) {
+        relay.dispatch(testRunner.getTestCase(), testRunner.getTestCase().getTestSuite(), event);
+    }
+
+    @Override
+    public void beforeRun(final TestCaseRunner testRunner, final TestCaseRunContext runContext) {
+        dispatch(testRunner, new OrderedEventRelay.Event() {
+            @Override
+            public Runnable detach() {
+                final TestCaseRunner runner = EventSnapshots.runner(testRunner, runContext);
+                final TestCaseRunContext context = runner.getRunContext();
+                return () -> delegate.beforeRun(runner, context);
+            }
+
+            @Override
+            public void run() {
+                delegate.beforeRun(testRunner, runContext);
+            }
+        });
+    }
+
+    @Override
+    public void beforeStep(final TestCaseRunner testRunner, final TestCaseRunContext runContext,
+            final TestStep testStep) {
+        dispatch(testRunner, new OrderedEventRelay.Event() {
+            @Override
+            public Runnable detach() {
+                final TestCaseRunner runner = EventSnapshots.runner(testRunner, runContext);
+                final TestCaseRunContext context = runner.getRunContext();
+                final TestStep step = EventSnapshots.step(testStep);
+                return () -> delegate.beforeStep(runner, context, step);
+            }
+
+            @Override
+            public void run() {
+                delegate.beforeStep(testRunner, runContext, testStep);
+            }
+        });
+    }
+
+    @Override
+    public void afterStep(final TestCaseRunner testRunner, final TestCaseRunContext runContext,
+            final TestStepResult result) {
+        dispatch(testRunner, new OrderedEventRelay.Event() {
+            @Override
+            public Runnable detach() {
+                final TestCaseRunner runner = EventSnapshots.runner(testRunner, runContext);
+                final TestCaseRunContext context = runner.getRunContext();
+                // the result is not changed after the step, it is passed on as it is
+                return () -> delegate.afterStep(runner, context, result);
+            }
+
+            @Override
+            public void run() {
+                delegate.afterStep(testRunner, runContext, result);
+            }
+        });
+    }
+
+    @Override
+    public void afterRun(final TestCaseRunner testRunner, final TestCaseRunContext runContext) {
+        dispatch(testRunner, new OrderedEventRelay.Event() {
+            @Override
+            public Runnable detach() {
+                final TestCaseRunner runner = EventSnapshots.runner(testRunner, runContext);
+                final TestCaseRunContext context = runner.getRunContext();
+                return () -> delegate.afterRun(runner, context);
+            }
+
+            @Override
+            public void run() {
+                delegate.afterRun(testRunner, runContext);
+            }
+        });
+    }
+}
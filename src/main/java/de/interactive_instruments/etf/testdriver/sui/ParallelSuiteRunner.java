@@ -0,0 +1,482 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import com.eviware.soapui.impl.wsdl.WsdlProject;
+import com.eviware.soapui.impl.wsdl.WsdlTestSuite;
+import com.eviware.soapui.impl.wsdl.testcase.WsdlProjectRunContext;
+import com.eviware.soapui.impl.wsdl.testcase.WsdlProjectRunner;
+import com.eviware.soapui.impl.wsdl.testcase.WsdlTestCase;
+import com.eviware.soapui.impl.wsdl.testcase.WsdlTestCaseRunner;
+import com.eviware.soapui.impl.wsdl.testcase.WsdlTestSuiteRunContext;
+import com.eviware.soapui.impl.wsdl.testcase.WsdlTestSuiteRunner;
+import com.eviware.soapui.model.testsuite.ProjectRunListener;
+import com.eviware.soapui.model.testsuite.TestCaseRunner;
+import com.eviware.soapui.model.testsuite.TestRunner;
+import com.eviware.soapui.model.testsuite.TestRunner.Status;
+import com.eviware.soapui.model.testsuite.TestSuite.TestSuiteRunType;
+import com.eviware.soapui.model.testsuite.TestSuiteRunListener;
+import com.eviware.soapui.model.testsuite.TestSuiteRunner;
+import com.eviware.soapui.support.StringUtils;
+import com.eviware.soapui.support.types.StringToObjectMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the test suites of a project with a bounded number of workers.
+ *
+ * The suites are run by a {@link WsdlProjectRunner}, see {@link #newProjectRunner()}, that passes through the life
+ * cycle of SoapUI's project runner: the before and after run scripts of the project are executed and the project
+ * run listeners and scripts see its status and the runners of the test suites.
+ *
+ * The first test suite and all test suites with the property {@link SuiConstants#SEQUENTIAL_PROPERTY} set to
+ * true are executed exclusively: all preceding suites must have finished before they start and subsequent suites
+ * are started after they have finished. The events for the result collector are forwarded in declared order by
+ * the {@link OrderedEventRelay}.
+ *
+ * If test case workers are configured, the test cases of a sequential test suite are scheduled according to the
+ * {@link TestCaseDependencyGraph}: a test case is started as soon as all preceding test cases it depends on have
+ * finished. Test suites that are executed exclusively and test suites with setup or teardown scripts are not
+ * split.
+ *
+ * If durations of previous runs are available, the test suites that run concurrently and the test cases that are
+ * ready at the same time are started longest first. The durations of this run are recorded.
+ *
+ * The workers can be virtual threads, see {@link SuiExecutors}.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class ParallelSuiteRunner {
+
+    private final static Logger logger = LoggerFactory.getLogger(ParallelSuiteRunner.class);
+    private final WsdlProject project;
+    private final OrderedEventRelay relay;
+    private final int workers;
+    private final int testCaseWorkers;
+    private final boolean virtualThreads;
+    private final SuiDurationStore.Durations durations;
+    private final Set<TestRunner> activeRunners = ConcurrentHashMap.newKeySet();
+    private ExecutorService testCaseExecutor;
+    private volatile boolean canceled;
+    private volatile boolean failed;
+
+    ParallelSuiteRunner(final WsdlProject project, final OrderedEventRelay relay, final int workers,
+            final int testCaseWorkers, final boolean virtualThreads) {
+        this(project, relay, workers, testCaseWorkers, virtualThreads, null);
+    }
+
+    ParallelSuiteRunner(final WsdlProject project, final OrderedEventRelay relay, final int workers,
+            final int testCaseWorkers, final boolean virtualThreads, final SuiDurationStore.Durations durations) {
+        this.project = project;
+        this.relay = relay;
+        this.workers = workers;
+        this.testCaseWorkers = testCaseWorkers;
+        this.virtualThreads = virtualThreads;
+        this.durations = durations;
+    }
+
+    /**
+     * @return a project runner that runs all enabled test suites with the workers, when it is started
+     */
+    WsdlProjectRunner newProjectRunner() {
+        return new ParallelProjectRunner();
+    }
+
+    /**
+     * Runs the test suites with the workers instead of SoapUI's sequential or unbounded parallel execution.
+     */
+    private final class ParallelProjectRunner extends WsdlProjectRunner {
+
+        private final List<WsdlTestSuite> suites = new ArrayList<>();
+        private final TestSuiteRunner[] results;
+        private ProjectRunListener[] listeners;
+
+        private ParallelProjectRunner() {
+            super(project, new StringToObjectMap());
+            for (int i = 0; i < project.getTestSuiteCount(); i++) {
+                final WsdlTestSuite suite = project.getTestSuiteAt(i);
+                if (!suite.isDisabled()) {
+                    suites.add(suite);
+                }
+            }
+            this.results = new TestSuiteRunner[suites.size()];
+        }
+
+        @Override
+        public void internalRun(final WsdlProjectRunContext runContext) throws Exception {
+            listeners = project.getProjectRunListeners();
+            project.runBeforeRunScript(runContext, this);
+            for (final ProjectRunListener listener : listeners) {
+                listener.beforeRun(this, runContext);
+            }
+            runSuites(this);
+            for (final TestSuiteRunner result : getResults()) {
+                if (result.getStatus() == Status.FAILED) {
+                    setStatus(Status.FAILED);
+                    break;
+                }
+            }
+        }
+
+        @Override
+        public void internalFinally(final WsdlProjectRunContext runContext) {
+            try {
+                project.runAfterRunScript(runContext, this);
+            } catch (final Exception e) {
+                logger.error("After run script of project [{}] failed", project.getName(), e);
+                failed = true;
+            }
+            if (listeners != null) {
+                for (final ProjectRunListener listener : listeners) {
+                    listener.afterRun(this, runContext);
+                }
+            }
+        }
+
+        @Override
+        public void onCancel(final String reason) {
+            ParallelSuiteRunner.this.cancel(reason);
+        }
+
+        private synchronized void finished(final int index, final TestSuiteRunner suiteRunner) {
+            results[index] = suiteRunner;
+        }
+
+        /**
+         * @return the runners of the finished test suites in declared order
+         */
+        @Override
+        public synchronized List<TestSuiteRunner> getResults() {
+            final List<TestSuiteRunner> finished = new ArrayList<>(results.length);
+            for (final TestSuiteRunner result : results) {
+                if (result != null) {
+                    finished.add(result);
+                }
+            }
+            return finished;
+        }
+    }
+
+    private void runSuites(final ParallelProjectRunner projectRunner) throws InterruptedException {
+        final List<WsdlTestSuite> suites = projectRunner.suites;
+        relay.begin(suites);
+        final ExecutorService executor = SuiExecutors.newWorkerPool("suite", workers, virtualThreads);
+        if (testCaseWorkers > 1) {
+            testCaseExecutor = SuiExecutors.newWorkerPool("testcase", testCaseWorkers, virtualThreads);
+        }
+        try {
+            final List<Future<?>> pending = new ArrayList<>();
+            final List<Integer> concurrent = new ArrayList<>();
+            for (int i = 0; i < suites.size(); i++) {
+                if (i == 0 || isSequential(suites.get(i))) {
+                    submitAll(executor, concurrent, pending, projectRunner);
+                    awaitAll(pending);
+                    runSuite(i, projectRunner, false);
+                } else {
+                    concurrent.add(i);
+                }
+            }
+            submitAll(executor, concurrent, pending, projectRunner);
+            awaitAll(pending);
+        } finally {
+            executor.shutdownNow();
+            if (testCaseExecutor != null) {
+                testCaseExecutor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Submit test suites that may run concurrently, the longest first
+     */
+    private void submitAll(final ExecutorService executor, final List<Integer> concurrent,
+            final List<Future<?>> pending, final ParallelProjectRunner projectRunner) {
+        if (durations != null) {
+            concurrent.sort(Comparator.comparingLong((Integer index) -> durations.getP95(
+                    SuiDurationStore.suiteKey(projectRunner.suites.get(index).getName()))).reversed());
+        }
+        for (final int index : concurrent) {
+            pending.add(executor.submit(() -> runSuite(index, projectRunner, true)));
+        }
+        concurrent.clear();
+    }
+
+    private void runSuite(final int index, final ParallelProjectRunner projectRunner, final boolean splittable) {
+        final WsdlTestSuite suite = projectRunner.suites.get(index);
+        final ProjectRunListener[] listeners = projectRunner.listeners;
+        final long start = System.currentTimeMillis();
+        try {
+            if (canceled) {
+                return;
+            }
+            relay.dispatch(suite, () -> {
+                for (final ProjectRunListener listener : listeners) {
+                    listener.beforeTestSuite(projectRunner, projectRunner.getRunContext(), suite);
+                }
+            });
+            logger.info("Running TestSuite [{}], runType = {}", suite.getName(), suite.getRunType());
+            final TestCaseDependencyGraph graph = splittable && isSplittable(suite)
+                    ? TestCaseDependencyGraph.of(suite)
+                    : null;
+            final WsdlTestSuiteRunner suiteRunner = graph != null && graph.hasIndependentTestCases()
+                    ? new SplitTestSuiteRunner(suite, graph)
+                    : new WsdlTestSuiteRunner(suite, new StringToObjectMap());
+            activeRunners.add(suiteRunner);
+            try {
+                suiteRunner.start(false);
+            } finally {
+                activeRunners.remove(suiteRunner);
+            }
+            projectRunner.finished(index, suiteRunner);
+            logger.info("TestSuite [{}] finished with status [{}] in {}ms", suite.getName(),
+                    suiteRunner.getStatus(), suiteRunner.getTimeTaken());
+            if (suiteRunner.getStatus() == Status.FAILED) {
+                failed = true;
+            }
+            if (!canceled) {
+                final long timeTaken = System.currentTimeMillis() - start;
+                SuiMetrics.current().recordSuite(timeTaken);
+                if (durations != null) {
+                    durations.record(SuiDurationStore.suiteKey(suite.getName()), timeTaken);
+                }
+            }
+            relay.dispatch(suite, () -> {
+                for (final ProjectRunListener listener : listeners) {
+                    listener.afterTestSuite(projectRunner, projectRunner.getRunContext(), suiteRunner);
+                }
+            });
+        } catch (final RuntimeException e) {
+            logger.error("TestSuite [{}] aborted", suite.getName(), e);
+            failed = true;
+        } finally {
+            relay.complete(suite);
+        }
+    }
+
+    /**
+     * Runs the test cases of a test suite on the test case workers in an order that respects the dependency graph.
+     * The runner passes through the life cycle of a {@link WsdlTestSuiteRunner}, so that the listeners see its
+     * status, the time taken and the results of the test cases.
+     */
+    private final class SplitTestSuiteRunner extends WsdlTestSuiteRunner {
+
+        private final TestCaseDependencyGraph graph;
+        private final TestCaseRunner[] results;
+        private TestSuiteRunListener[] suiteListeners;
+
+        private SplitTestSuiteRunner(final WsdlTestSuite suite, final TestCaseDependencyGraph graph) {
+            super(suite, new StringToObjectMap());
+            this.graph = graph;
+            this.results = new TestCaseRunner[graph.getTestCases().size()];
+        }
+
+        @Override
+        public void internalRun(final WsdlTestSuiteRunContext runContext) throws Exception {
+            suiteListeners = getTestSuite().getTestSuiteRunListeners();
+            for (final TestSuiteRunListener listener : suiteListeners) {
+                listener.beforeRun(this, runContext);
+            }
+            try {
+                runTestCases(this);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.error("TestSuite [{}] interrupted", getTestSuite().getName());
+                ParallelSuiteRunner.this.cancel("Interrupted");
+                failed = true;
+                return;
+            }
+            for (final TestCaseRunner result : getResults()) {
+                if (result.getStatus() == Status.FAILED) {
+                    setStatus(Status.FAILED);
+                    break;
+                }
+            }
+        }
+
+        @Override
+        public void internalFinally(final WsdlTestSuiteRunContext runContext) {
+            if (suiteListeners != null) {
+                for (final TestSuiteRunListener listener : suiteListeners) {
+                    listener.afterRun(this, runContext);
+                }
+            }
+        }
+
+        private synchronized void finished(final int index, final TestCaseRunner testCaseRunner) {
+            results[index] = testCaseRunner;
+        }
+
+        /**
+         * @return the runners of the finished test cases in declared order
+         */
+        @Override
+        public synchronized List<TestCaseRunner> getResults() {
+            final List<TestCaseRunner> finished = new ArrayList<>(results.length);
+            for (final TestCaseRunner result : results) {
+                if (result != null) {
+                    finished.add(result);
+                }
+            }
+            return finished;
+        }
+    }
+
+    private void runTestCases(final SplitTestSuiteRunner suiteRunner) throws InterruptedException {
+        final WsdlTestSuite suite = suiteRunner.getTestSuite();
+        final TestCaseDependencyGraph graph = suiteRunner.graph;
+        final List<WsdlTestCase> testCases = graph.getTestCases();
+        final int[] inDegrees = graph.getInDegrees();
+        final CountDownLatch finished = new CountDownLatch(testCases.size());
+
+        logger.info("Running {} TestCases of TestSuite [{}] with {} workers", testCases.size(), suite.getName(),
+                testCaseWorkers);
+        final OrderedEventRelay testCaseRelay = relay.nest(suite, testCases);
+        try {
+            final List<Integer> ready = new ArrayList<>();
+            for (int i = 0; i < testCases.size(); i++) {
+                if (inDegrees[i] == 0) {
+                    ready.add(i);
+                }
+            }
+            for (final int index : longestFirst(suite, graph, ready)) {
+                submitTestCase(index, suiteRunner, inDegrees, testCaseRelay, finished);
+            }
+            finished.await();
+        } finally {
+            relay.unnest(testCases);
+        }
+    }
+
+    private void submitTestCase(final int index, final SplitTestSuiteRunner suiteRunner, final int[] inDegrees,
+            final OrderedEventRelay testCaseRelay, final CountDownLatch finished) {
+        final TestCaseDependencyGraph graph = suiteRunner.graph;
+        final WsdlTestCase testCase = graph.getTestCases().get(index);
+        try {
+            testCaseExecutor.execute(() -> {
+                try {
+                    if (!canceled) {
+                        runTestCase(index, testCase, suiteRunner);
+                    }
+                } finally {
+                    testCaseRelay.complete(testCase);
+                    final List<Integer> released = new ArrayList<>();
+                    synchronized (inDegrees) {
+                        for (final int dependent : graph.getDependents(index)) {
+                            if (--inDegrees[dependent] == 0) {
+                                released.add(dependent);
+                            }
+                        }
+                    }
+                    // before the dependents are submitted, which may fail
+                    finished.countDown();
+                    for (final int dependent : longestFirst(suiteRunner.getTestSuite(), graph, released)) {
+                        submitTestCase(dependent, suiteRunner, inDegrees, testCaseRelay, finished);
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            // The workers have been shut down: the test case and its dependents will never run
+            logger.error("TestCase [{}] rejected, canceling TestSuite [{}]", testCase.getName(),
+                    suiteRunner.getTestSuite().getName());
+            canceled = true;
+            failed = true;
+            for (final WsdlTestCase pending : graph.getTestCases()) {
+                testCaseRelay.complete(pending);
+            }
+            while (finished.getCount() > 0) {
+                finished.countDown();
+            }
+        }
+    }
+
+    private List<Integer> longestFirst(final WsdlTestSuite suite, final TestCaseDependencyGraph graph,
+            final List<Integer> indices) {
+        if (durations != null && indices.size() > 1) {
+            indices.sort(Comparator.comparingLong((Integer index) -> durations.getP95(SuiDurationStore.testCaseKey(
+                    suite.getName(), graph.getTestCases().get(index).getName()))).reversed());
+        }
+        return indices;
+    }
+
+    private void runTestCase(final int index, final WsdlTestCase testCase, final SplitTestSuiteRunner suiteRunner) {
+        try {
+            for (final TestSuiteRunListener listener : suiteRunner.suiteListeners) {
+                listener.beforeTestCase(suiteRunner, suiteRunner.getRunContext(), testCase);
+            }
+            final WsdlTestCaseRunner testCaseRunner = new WsdlTestCaseRunner(testCase, new StringToObjectMap());
+            activeRunners.add(testCaseRunner);
+            try {
+                testCaseRunner.start(false);
+            } finally {
+                activeRunners.remove(testCaseRunner);
+            }
+            suiteRunner.finished(index, testCaseRunner);
+            if (testCaseRunner.getStatus() == Status.FAILED) {
+                failed = true;
+            }
+            for (final TestSuiteRunListener listener : suiteRunner.suiteListeners) {
+                listener.afterTestCase(suiteRunner, suiteRunner.getRunContext(), testCaseRunner);
+            }
+        } catch (final RuntimeException e) {
+            logger.error("TestCase [{}] aborted", testCase.getName(), e);
+            failed = true;
+        }
+    }
+
+    private boolean isSplittable(final WsdlTestSuite suite) {
+        return testCaseExecutor != null && suite.getRunType() == TestSuiteRunType.SEQUENTIAL
+                && !StringUtils.hasContent(suite.getSetupScript())
+                && !StringUtils.hasContent(suite.getTearDownScript());
+    }
+
+    private static void awaitAll(final List<Future<?>> pending) throws InterruptedException {
+        for (final Future<?> future : pending) {
+            try {
+                future.get();
+            } catch (final ExecutionException e) {
+                logger.error("TestSuite execution failed", e.getCause());
+            }
+        }
+        pending.clear();
+    }
+
+    private static boolean isSequential(final WsdlTestSuite suite) {
+        return "true".equalsIgnoreCase(suite.getPropertyValue(SuiConstants.SEQUENTIAL_PROPERTY));
+    }
+
+    void cancel(final String reason) {
+        canceled = true;
+        for (final TestRunner activeRunner : activeRunners) {
+            activeRunner.cancel(reason);
+        }
+    }
+
+    boolean isFailed() {
+        return failed;
+    }
+}
@@ -20,9 +20,10 @@
  */
 package de.interactive_instruments.etf.testdriver.sui;
 
-import java.io.PrintWriter;
-import java.io.StringWriter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.eviware.soapui.impl.wsdl.WsdlProject;
 import com.eviware.soapui.impl.wsdl.WsdlTestSuite;
@@ -30,8 +31,6 @@ import com.eviware.soapui.impl.wsdl.testcase.WsdlProjectRunner;
 import com.eviware.soapui.impl.wsdl.testcase.WsdlTestCase;
 import com.eviware.soapui.impl.wsdl.testcase.WsdlTestCaseRunner;
 import com.eviware.soapui.impl.wsdl.testcase.WsdlTestSuiteRunner;
-import com.eviware.soapui.impl.wsdl.teststeps.WsdlTestStep;
-import com.eviware.soapui.impl.wsdl.teststeps.WsdlTestStepResult;
 import com.eviware.soapui.model.project.ProjectFactoryRegistry;
 import com.eviware.soapui.model.support.ProjectRunListenerAdapter;
 import com.eviware.soapui.model.testsuite.*;
@@ -64,16 +63,16 @@ class STestCaseRunner extends AbstractSoapUITestRunner {
 
     private String testSuite;
     private String testCase;
-    private List<TestAssertion> assertions = new ArrayList<TestAssertion>();
-    private Map<TestAssertion, WsdlTestStepResult> assertionResults = new HashMap<TestAssertion, WsdlTestStepResult>();
     // private List<TestCaseRunner> runningTests = new
     // ArrayList<TestCaseRunner>();
-    private List<TestCase> failedTests = new ArrayList<TestCase>();
+    private volatile SuiFailureSummary failures = new SuiFailureSummary(5);
 
-    private int testSuiteCount;
-    private int testCaseCount;
-    private int testStepCount;
-    private int testAssertionCount;
+    private final AtomicInteger testSuiteCount = new AtomicInteger();
+    private final AtomicInteger testCaseCount = new AtomicInteger();
+    private final AtomicInteger testStepCount = new AtomicInteger();
+    private final AtomicInteger testAssertionCount = new AtomicInteger();
+    // "<step name> run count" context property keys, computed once per step
+    private final ConcurrentMap<TestStep, String> runCountKeys = new ConcurrentHashMap<>();
 
     // private boolean exportAll;
     private boolean ignoreErrors;
@@ -84,12 +83,20 @@ class STestCaseRunner extends AbstractSoapUITestRunner {
     // private WsdlProject project;
     private String projectPassword;
     private boolean saveAfterRun;
-    private boolean failed;
+    private volatile boolean failed;
+    private int parallelWorkers = 1;
+    private int testCaseWorkers = 1;
+    private boolean virtualThreads;
+    private Map<String, String> settingsOverrides = Collections.emptyMap();
+    private SuiDurationStore.Durations durations;
 
     // private final SuiTestRunnerProgress progress;
 
     private WsdlProject project;
+    private SuiProjectTemplate projectTemplate;
     private WsdlProjectRunner runner = null;
+    private ParallelSuiteRunner parallelRunner = null;
+    private final OrderedEventRelay relay = new OrderedEventRelay();
 
     public boolean isFailed() {
         return failed;
@@ -107,6 +114,58 @@ class STestCaseRunner extends AbstractSoapUITestRunner {
         return maxErrors;
     }
 
+    /**
+     * Sets the number of test suites that are executed in parallel, if the whole project is run
+     *
+     * @param parallelWorkers
+     *            number of workers, 1 to run all test suites one after another
+     */
+    public void setParallelWorkers(int parallelWorkers) {
+        this.parallelWorkers = Math.max(1, parallelWorkers);
+    }
+
+    /**
+     * Sets the number of independent test cases of a test suite that are executed in parallel
+     *
+     * @param testCaseWorkers
+     *            number of workers, 1 to run all test cases of a test suite one after another
+     */
+    public void setTestCaseWorkers(int testCaseWorkers) {
+        this.testCaseWorkers = Math.max(1, testCaseWorkers);
+    }
+
+    /**
+     * Run the parallel workers on virtual threads. The number of workers then only limits the number of
+     * concurrently running test suites or test cases.
+     *
+     * @param virtualThreads
+     *            true to use virtual threads, if supported by the runtime
+     */
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Sets the duration statistics of previous runs, which are used for scheduling and updated with the durations
+     * of this run
+     */
+    void setDurations(final SuiDurationStore.Durations durations) {
+        this.durations = durations;
+    }
+
+    /**
+     * Sets SoapUI settings that only apply to the project of this runner. The global settings of the shared SoapUI
+     * core are not modified. Only settings that SoapUI reads from the project or its requests take effect, the
+     * transport settings of the shared HTTP client, like the connection pool, proxy and SSL settings, are read from
+     * the global settings.
+     *
+     * @param settingsOverrides
+     *            setting IDs mapped to values, i.e. "HttpSettings@socket_timeout" to "60000"
+     */
+    public void setSettingsOverrides(Map<String, String> settingsOverrides) {
+        this.settingsOverrides = settingsOverrides;
+    }
+
     public void setSaveAfterRun(boolean saveAfterRun) {
         this.saveAfterRun = saveAfterRun;
     }
@@ -119,6 +178,16 @@ class STestCaseRunner extends AbstractSoapUITestRunner {
         return projectPassword;
     }
 
+    /**
+     * Create the project from an already parsed template instead of loading the project file
+     *
+     * @param projectTemplate
+     *            the template of the project file
+     */
+    public void setProjectTemplate(final SuiProjectTemplate projectTemplate) {
+        this.projectTemplate = projectTemplate;
+    }
+
     protected JUnitReportCollector createJUnitReportCollector() {
         return new JUnitReportCollector(maxErrors);
     }
@@ -140,19 +209,27 @@ class STestCaseRunner extends AbstractSoapUITestRunner {
         // Does not work with the log4j-over-slf4j bridge, as setWriter() method is not supported
         // initGroovyLog();
 
-        assertions.clear();
+        failures = new SuiFailureSummary(maxErrors);
 
         String projectFile = getProjectFile();
         // project = (WsdlProject) ProjectFactoryRegistry.getProjectFactory("wsdl");
         // project.loadProject(new URL(projectFile));
 
-        this.project = (WsdlProject) ProjectFactoryRegistry.getProjectFactory("wsdl").createNew(projectFile,
-                getProjectPassword());
+        if (projectTemplate != null) {
+            this.project = projectTemplate.newProject();
+        } else {
+            this.project = (WsdlProject) ProjectFactoryRegistry.getProjectFactory("wsdl").createNew(projectFile,
+                    getProjectPassword());
+        }
 
         if (project.isDisabled()) {
             throw new Exception("Failed to load soapUI project file [" + projectFile + "]");
         }
 
+        for (final Map.Entry<String, String> override : settingsOverrides.entrySet()) {
+            project.getSettings().setString(override.getKey(), override.getValue());
+        }
+
         this.project.addProjectListener(this.progress);
         project.setActiveEnvironment(new CollectorInjectionAdapter(project, collector));
         this.project.addProjectRunListener(new ProjectRunCollector(collector));
@@ -164,10 +241,17 @@ class STestCaseRunner extends AbstractSoapUITestRunner {
         for (final TestSuite ts : project.getTestSuiteList()) {
             ts.addTestSuiteListener(this.progress);
             for (final TestCase tc : ts.getTestCaseList()) {
-                tsCount += tc.getTestStepCount();
-                tc.addTestRunListener(new TestRunCollector(collector));
+                if (!ts.isDisabled() && !tc.isDisabled()) {
+                    for (final TestStep step : tc.getTestStepList()) {
+                        if (!step.isDisabled()) {
+                            tsCount++;
+                        }
+                    }
+                }
+                tc.addTestRunListener(new OrderedTestRunListener(new TestRunCollector(collector), relay));
             }
         }
+        progress.initSteps(tsCount, durations != null ? durations.getMean(SuiDurationStore.PROJECT_KEY) : -1);
 
         return project;
     }
@@ -226,7 +310,7 @@ class STestCaseRunner extends AbstractSoapUITestRunner {
             }
         }
 
-        if ((assertions.size() > 0 || failedTests.size() > 0) && !ignoreErrors) {
+        if (!failures.isEmpty() && !ignoreErrors) {
             // throwFailureException();
             return false;
         }
@@ -238,6 +322,9 @@ class STestCaseRunner extends AbstractSoapUITestRunner {
         if (runner != null) {
             runner.cancel("User requested termination");
         }
+        if (parallelRunner != null) {
+            parallelRunner.cancel("User requested termination");
+        }
     }
 
     protected void runProject(WsdlProject project) {
@@ -246,11 +333,38 @@ class STestCaseRunner extends AbstractSoapUITestRunner {
         project.addProjectRunListener(projectRunListener);
 
         try {
-            log.info(("Running Project [" + project.getName() + "], runType = " + project.getRunType()));
-            runner = project.run(new StringToObjectMap(), true);
-            runner.waitUntilFinished();
-            log.info("Project [" + project.getName() + "] finished with status [" + runner.getStatus() + "] in "
-                    + runner.getTimeTaken() + "ms");
+            if (parallelWorkers > 1 || testCaseWorkers > 1) {
+                log.info(("Running Project [" + project.getName() + "] with " + parallelWorkers
+                        + " parallel workers and " + testCaseWorkers + " test case workers"
+                        + (virtualThreads ? " on virtual threads" : "")));
+                parallelRunner = new ParallelSuiteRunner(project, relay, parallelWorkers, testCaseWorkers,
+                        virtualThreads, durations);
+                runner = parallelRunner.newProjectRunner();
+                runner.start(false);
+                if (parallelRunner.isFailed() || runner.getStatus() == Status.FAILED) {
+                    this.failed = true;
+                }
+                log.info("Project [" + project.getName() + "] finished with status [" + runner.getStatus() + "] in "
+                        + runner.getTimeTaken() + "ms");
+                if (runner.getStatus() != Status.CANCELED) {
+                    SuiMetrics.current().recordProject(runner.getTimeTaken());
+                    if (durations != null) {
+                        durations.record(SuiDurationStore.PROJECT_KEY, runner.getTimeTaken());
+                    }
+                }
+            } else {
+                log.info(("Running Project [" + project.getName() + "], runType = " + project.getRunType()));
+                runner = project.run(new StringToObjectMap(), true);
+                runner.waitUntilFinished();
+                log.info("Project [" + project.getName() + "] finished with status [" + runner.getStatus() + "] in "
+                        + runner.getTimeTaken() + "ms");
+                if (runner.getStatus() != Status.CANCELED) {
+                    SuiMetrics.current().recordProject(runner.getTimeTaken());
+                    if (durations != null) {
+                        durations.record(SuiDurationStore.PROJECT_KEY, runner.getTimeTaken());
+                    }
+                }
+            }
         } catch (Exception e) {
             this.failed = true;
         } finally {
@@ -275,29 +389,11 @@ class STestCaseRunner extends AbstractSoapUITestRunner {
     }
 
     protected void throwFailureException() throws Exception {
-        StringBuffer buf = new StringBuffer();
-
-        for (int c = 0; c < assertions.size(); c++) {
-            TestAssertion assertion = assertions.get(c);
-            Assertable assertable = assertion.getAssertable();
-            if (assertable instanceof WsdlTestStep)
-                failedTests.remove(((WsdlTestStep) assertable).getTestCase());
-
-            buf.append(assertion.getName() + " in [" + assertable.getModelItem().getName() + "] failed;\n");
-            buf.append(Arrays.toString(assertion.getErrors()) + "\n");
-
-            WsdlTestStepResult result = assertionResults.get(assertion);
-            StringWriter stringWriter = new StringWriter();
-            PrintWriter writer = new PrintWriter(stringWriter);
-            result.writeTo(writer);
-            buf.append(stringWriter.toString());
-        }
-
-        while (!failedTests.isEmpty()) {
-            buf.append("TestCase [" + failedTests.remove(0).getName() + "] failed without assertions\n");
-        }
+        throw new Exception(failures.toString());
+    }
 
-        throw new Exception(buf.toString());
+    SuiFailureSummary getFailures() {
+        return failures;
     }
 
     public void exportJUnitReports(JUnitReportCollector collector, String folder, WsdlProject project)
@@ -322,7 +418,7 @@ class STestCaseRunner extends AbstractSoapUITestRunner {
             // e.printStackTrace();
             this.failed = true;
         } finally {
-            testSuiteCount++;
+            testSuiteCount.incrementAndGet();
         }
     }
 
@@ -368,13 +464,15 @@ class STestCaseRunner extends AbstractSoapUITestRunner {
     }
 
     public void beforeRun(TestCaseRunner testRunner, TestCaseRunContext runContext) {
-        log.info("Running soapUI testcase [" + testRunner.getTestCase().getName() + "]");
+        if (log.isInfoEnabled()) {
+            log.info("Running soapUI testcase [" + testRunner.getTestCase().getName() + "]");
+        }
     }
 
     public void beforeStep(TestCaseRunner testRunner, TestCaseRunContext runContext, TestStep currentStep) {
         super.beforeStep(testRunner, runContext, currentStep);
 
-        if (currentStep != null)
+        if (currentStep != null && log.isInfoEnabled())
             log.info("running step [" + currentStep.getName() + "]");
     }
 
@@ -383,47 +481,66 @@ class STestCaseRunner extends AbstractSoapUITestRunner {
         TestStep currentStep = runContext.getCurrentStep();
 
         if (currentStep instanceof Assertable) {
+            final boolean infoEnabled = log.isInfoEnabled();
             Assertable requestStep = (Assertable) currentStep;
-            for (int c = 0; c < requestStep.getAssertionCount(); c++) {
+            final int assertionCount = requestStep.getAssertionCount();
+            for (int c = 0; c < assertionCount; c++) {
                 TestAssertion assertion = requestStep.getAssertionAt(c);
-                log.info("Assertion [" + assertion.getName() + "] has status " + assertion.getStatus());
-                if (assertion.getStatus() == AssertionStatus.FAILED) {
+                final AssertionStatus status = assertion.getStatus();
+                if (infoEnabled) {
+                    log.info("Assertion [" + assertion.getName() + "] has status " + status);
+                }
+                if (status == AssertionStatus.FAILED) {
                     for (AssertionError error : assertion.getErrors())
                         log.error("ASSERTION FAILED -> " + error.getMessage());
 
-                    assertions.add(assertion);
-                    assertionResults.put(assertion, (WsdlTestStepResult) result);
+                    failures.addFailedAssertion(assertion, result);
                 }
-
-                testAssertionCount++;
             }
+            testAssertionCount.addAndGet(assertionCount);
         }
 
-        String countPropertyName = currentStep.getName() + " run count";
-        Long count = (Long) runContext.getProperty(countPropertyName);
-        if (count == null) {
-            count = new Long(0);
-        }
+        // Scripts read the run count from the context, so it is published on every step. Long.valueOf only avoids
+        // the allocation for the first 127 runs of a step, steps in loops box one Long per run.
+        final String countPropertyName = runCountKeys.computeIfAbsent(currentStep, STestCaseRunner::runCountKey);
+        final Object count = runContext.getProperty(countPropertyName);
+        runContext.setProperty(countPropertyName, Long.valueOf(count instanceof Long ? (Long) count + 1 : 1));
 
-        runContext.setProperty(countPropertyName, new Long(count.longValue() + 1));
+        testStepCount.incrementAndGet();
+        progress.stepCompleted();
+        SuiMetrics.current().recordStep(currentStep.getClass(), result.getTimeTaken());
+    }
 
-        testStepCount++;
+    private static String runCountKey(final TestStep testStep) {
+        return testStep.getName() + " run count";
     }
 
     public void afterRun(TestCaseRunner testRunner, TestCaseRunContext runContext) {
-        log.info("Finished running soapUI testcase [" + testRunner.getTestCase().getName() + "], time taken: "
-                + testRunner.getTimeTaken() + "ms, status: " + testRunner.getStatus());
+        if (log.isInfoEnabled()) {
+            log.info("Finished running soapUI testcase [" + testRunner.getTestCase().getName() + "], time taken: "
+                    + testRunner.getTimeTaken() + "ms, status: " + testRunner.getStatus());
+        }
 
-        if (testRunner.getStatus() == Status.FAILED) {
-            failedTests.add(testRunner.getTestCase());
+        failures.testCaseFinished(testRunner.getTestCase(), testRunner.getStatus() == Status.FAILED);
+        if (durations != null && testRunner.getStatus() != Status.CANCELED) {
+            durations.record(SuiDurationStore.testCaseKey(testRunner.getTestCase().getTestSuite().getName(),
+                    testRunner.getTestCase().getName()), testRunner.getTimeTaken());
         }
 
-        testCaseCount++;
+        testCaseCount.incrementAndGet();
     }
 
     private class InternalProjectRunListener extends ProjectRunListenerAdapter {
         public void afterTestSuite(ProjectRunner projectRunner, ProjectRunContext runContext, TestSuiteRunner testRunner) {
-            testSuiteCount++;
+            testSuiteCount.incrementAndGet();
+            // the parallel runner records the suite durations itself
+            if (parallelRunner == null && testRunner.getStatus() != Status.CANCELED) {
+                SuiMetrics.current().recordSuite(testRunner.getTimeTaken());
+                if (durations != null) {
+                    durations.record(SuiDurationStore.suiteKey(testRunner.getTestSuite().getName()),
+                            testRunner.getTimeTaken());
+                }
+            }
         }
     }
 
@@ -0,0 +1,200 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.interactive_instruments.etf.dal.dao.StreamWriteDao;
+import de.interactive_instruments.etf.dal.dto.test.ExecutableTestSuiteDto;
+import de.interactive_instruments.exceptions.StorageException;
+
+/**
+ * Persists the Executable Test Suites built during the initial directory scan in batches.
+ *
+ * While the bulk mode is active, built Executable Test Suites are queued and written with one
+ * {@link StreamWriteDao#addAll} call per batch. A batch is flushed when it is full and when all loaders that have
+ * started loading a file are done, see {@link #expect()} and {@link #done()}. If loaders never finish, for instance
+ * because of unresolvable dependencies, the queue is flushed when no Executable Test Suite has been added for a
+ * while. The first flush that is not caused by a full batch ends the bulk mode, all later reloads are written one by
+ * one.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class SuiBulkWriter {
+
+    private final static Logger logger = LoggerFactory.getLogger(SuiBulkWriter.class);
+    private final static long IDLE_FLUSH_DELAY_MS = 2000;
+    private final StreamWriteDao<ExecutableTestSuiteDto> writeDao;
+    private final int batchSize;
+    private final List<ExecutableTestSuiteDto> pending = new ArrayList<>();
+    private final ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> idleFlush;
+    private boolean bulkMode;
+    private int loading;
+
+    SuiBulkWriter(final StreamWriteDao<ExecutableTestSuiteDto> writeDao, final int batchSize) {
+        this.writeDao = writeDao;
+        this.batchSize = Math.max(1, batchSize);
+        this.bulkMode = this.batchSize > 1;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "etf-sui-bulk-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Persist an Executable Test Suite, immediately or with the next batch
+     *
+     * @param executableTestSuite
+     *            the built Executable Test Suite
+     * @throws StorageException
+     *             if the Executable Test Suite is written immediately and could not be stored
+     */
+    void add(final ExecutableTestSuiteDto executableTestSuite) throws StorageException {
+        final List<ExecutableTestSuiteDto> batch;
+        synchronized (this) {
+            if (!bulkMode) {
+                batch = null;
+            } else {
+                pending.add(executableTestSuite);
+                if (idleFlush != null) {
+                    idleFlush.cancel(false);
+                }
+                if (pending.size() >= batchSize) {
+                    batch = drain();
+                } else {
+                    idleFlush = scheduler.schedule(this::flushIdle, IDLE_FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+                    return;
+                }
+            }
+        }
+        if (batch == null) {
+            writeDao.add(executableTestSuite);
+        } else {
+            write(batch);
+        }
+    }
+
+    /**
+     * Announce that a loader started loading a file
+     */
+    synchronized void expect() {
+        loading++;
+    }
+
+    /**
+     * Report that a loader finished building, failed or has been released. If it was the last one, the queued
+     * Executable Test Suites are written.
+     */
+    void done() {
+        synchronized (this) {
+            if (loading > 0) {
+                loading--;
+            }
+            if (loading > 0 || !bulkMode) {
+                return;
+            }
+        }
+        flushIdle();
+    }
+
+    /**
+     * Remove an Executable Test Suite that has not been written yet
+     *
+     * @param executableTestSuite
+     *            the Executable Test Suite of a released loader
+     * @return true if it was still queued and must not be deleted from the storage
+     */
+    synchronized boolean discard(final ExecutableTestSuiteDto executableTestSuite) {
+        for (int i = 0; i < pending.size(); i++) {
+            if (pending.get(i) == executableTestSuite) {
+                pending.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<ExecutableTestSuiteDto> drain() {
+        final List<ExecutableTestSuiteDto> batch = new ArrayList<>(pending);
+        pending.clear();
+        return batch;
+    }
+
+    private void flushIdle() {
+        final List<ExecutableTestSuiteDto> batch;
+        synchronized (this) {
+            if (idleFlush != null) {
+                idleFlush.cancel(false);
+            }
+            batch = drain();
+            if (bulkMode) {
+                logger.info("Initial load finished, persisting further Executable Test Suites one by one");
+                bulkMode = false;
+            }
+        }
+        write(batch);
+    }
+
+    private void write(final List<ExecutableTestSuiteDto> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        final long start = System.currentTimeMillis();
+        try {
+            writeDao.addAll(batch);
+            logger.debug("Persisted {} Executable Test Suites in {} ms", batch.size(),
+                    System.currentTimeMillis() - start);
+        } catch (final StorageException e) {
+            logger.warn("Batch write failed, persisting {} Executable Test Suites one by one", batch.size(), e);
+            for (final ExecutableTestSuiteDto executableTestSuite : batch) {
+                try {
+                    writeDao.add(executableTestSuite);
+                } catch (final StorageException e2) {
+                    logger.error("Could not persist Executable Test Suite {}",
+                            executableTestSuite.getDescriptiveLabel(), e2);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write all queued Executable Test Suites and stop the bulk mode
+     */
+    void release() {
+        final List<ExecutableTestSuiteDto> batch;
+        synchronized (this) {
+            if (idleFlush != null) {
+                idleFlush.cancel(false);
+            }
+            batch = drain();
+            bulkMode = false;
+        }
+        write(batch);
+        scheduler.shutdownNow();
+    }
+}
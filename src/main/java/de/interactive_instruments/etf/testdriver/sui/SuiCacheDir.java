@@ -0,0 +1,124 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Directories of the persistent caches of the driver.
+ *
+ * By default the caches are stored in the directory 'sui-cache' next to the driver jar, or in '.etf/sui-cache' in
+ * the home directory if that location is not writable. The directories are only used if they are owned by the user
+ * running the driver and are not writable by other users, as cache entries are read without further checks.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class SuiCacheDir {
+
+    private final static Logger logger = LoggerFactory.getLogger(SuiCacheDir.class);
+    private final static String DIR_NAME = "sui-cache";
+    private final static Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rwx------");
+
+    private SuiCacheDir() {}
+
+    /**
+     * @param configured
+     *            the configured directory or null
+     * @param name
+     *            name of the cache
+     * @return the configured directory or the default directory of the cache
+     */
+    static File of(final String configured, final String name) {
+        if (configured != null && !configured.trim().isEmpty()) {
+            return new File(configured.trim());
+        }
+        return new File(root(), name);
+    }
+
+    private static File root() {
+        try {
+            final File location = new File(SuiCacheDir.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            final File parent = location.getParentFile();
+            if (parent != null && parent.canWrite()) {
+                return new File(parent, DIR_NAME);
+            }
+        } catch (final Exception e) {
+            logger.trace("Driver location not resolvable", e);
+        }
+        return new File(new File(System.getProperty("user.home"), ".etf"), DIR_NAME);
+    }
+
+    /**
+     * Create the directory, accessible only by the owner, or check that an existing directory is not writable by other
+     * users
+     *
+     * @param dir
+     *            the cache directory
+     * @return true if the directory can be used, false if it could not be created or is not safe
+     */
+    static boolean prepare(final File dir) {
+        final Path path = dir.toPath();
+        final boolean posix = Files.getFileAttributeView(
+                dir.isDirectory() ? path : path.toAbsolutePath().getRoot(), PosixFileAttributeView.class) != null;
+        try {
+            if (!dir.isDirectory()) {
+                if (posix) {
+                    Files.createDirectories(path, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+                } else {
+                    Files.createDirectories(path);
+                    dir.setReadable(false, false);
+                    dir.setWritable(false, false);
+                    dir.setExecutable(false, false);
+                    dir.setReadable(true, true);
+                    dir.setWritable(true, true);
+                    dir.setExecutable(true, true);
+                }
+            }
+            if (!posix) {
+                return dir.canWrite();
+            }
+            if (!Files.getOwner(path).getName().equals(System.getProperty("user.name"))) {
+                logger.warn("Not using cache directory {}, which is not owned by the current user", dir);
+                return false;
+            }
+            final Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(path);
+            if (permissions.contains(PosixFilePermission.GROUP_WRITE)
+                    || permissions.contains(PosixFilePermission.OTHERS_WRITE)) {
+                logger.warn("Not using cache directory {}, which is writable by other users", dir);
+                return false;
+            }
+            return true;
+        } catch (final IOException | UnsupportedOperationException | SecurityException e) {
+            logger.warn("Could not create cache directory {}", dir, e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.eviware.soapui.impl.wsdl.submit.RequestTransport;
+import com.eviware.soapui.impl.wsdl.submit.RequestTransportRegistry;
+import com.eviware.soapui.impl.wsdl.support.http.HttpClientSupport;
+import com.eviware.soapui.model.settings.Settings;
+import com.eviware.soapui.settings.HttpSettings;
+
+import org.apache.http.*;
+import org.apache.http.client.HttpClient;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.impl.client.AbstractHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.protocol.ExecutionContext;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Manages the pool of keep-alive connections of the HTTP client that SoapUI shares between all test tasks.
+ *
+ * The pool limits the connections per route and in total, closes idle and expired connections in the background
+ * and counts new and reused connections. Requests in flight are counted by the HTTP transports of SoapUI, which
+ * are wrapped while the pool is installed.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class SuiConnectionPool {
+
+    private final static Logger logger = LoggerFactory.getLogger(SuiConnectionPool.class);
+    private final AbstractHttpClient httpClient;
+    private final ThreadSafeClientConnManager connectionManager;
+    private final ScheduledExecutorService evictor;
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong inFlight = new AtomicLong();
+    private final Map<String, RequestTransport> wrappedTransports = new HashMap<>();
+
+    private SuiConnectionPool(final AbstractHttpClient httpClient,
+            final ThreadSafeClientConnManager connectionManager, final long idleTimeoutSeconds) {
+        this.httpClient = httpClient;
+        this.connectionManager = connectionManager;
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "etf-sui-connection-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final long period = Math.max(1, idleTimeoutSeconds / 2);
+        evictor.scheduleWithFixedDelay(() -> {
+            connectionManager.closeExpiredConnections();
+            connectionManager.closeIdleConnections(idleTimeoutSeconds, TimeUnit.SECONDS);
+        }, period, period, TimeUnit.SECONDS);
+        httpClient.addRequestInterceptor(new ConnectionCounter());
+        httpClient.addResponseInterceptor(new ResponseCounter());
+        for (final String protocol : new String[]{"http", "https"}) {
+            try {
+                final RequestTransport transport = RequestTransportRegistry.getTransport(protocol);
+                RequestTransportRegistry.addTransport(protocol, countingTransport(transport));
+                wrappedTransports.put(protocol, transport);
+            } catch (final RequestTransportRegistry.MissingTransportException e) {
+                logger.warn("Requests in flight of the {} transport can not be counted", protocol);
+            }
+        }
+    }
+
+    /**
+     * Wraps a transport, a request is in flight until it has been sent and its response has been received, or it
+     * failed
+     */
+    private RequestTransport countingTransport(final RequestTransport transport) {
+        return (RequestTransport) Proxy.newProxyInstance(RequestTransport.class.getClassLoader(),
+                new Class<?>[]{RequestTransport.class}, (proxy, method, args) -> {
+                    final boolean send = method.getName().equals("sendRequest");
+                    if (send) {
+                        inFlight.incrementAndGet();
+                    }
+                    try {
+                        return method.invoke(transport, args);
+                    } catch (final InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        if (send) {
+                            inFlight.decrementAndGet();
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Set the connection limits in the SoapUI settings before they are published, SoapUI updates the connection
+     * manager when these settings change
+     *
+     * @param settings
+     *            the global SoapUI settings
+     * @param maxTotal
+     *            maximum number of connections
+     * @param maxPerRoute
+     *            maximum number of connections to one host
+     */
+    static void configure(final Settings settings, final int maxTotal, final int maxPerRoute) {
+        settings.setLong(HttpSettings.MAX_TOTAL_CONNECTIONS, maxTotal);
+        settings.setLong(HttpSettings.MAX_CONNECTIONS_PER_HOST, maxPerRoute);
+    }
+
+    /**
+     * Configure the pool of the shared SoapUI HTTP client, the SoapUI core must already be set
+     *
+     * @param maxTotal
+     *            maximum number of connections
+     * @param maxPerRoute
+     *            maximum number of connections to one host
+     * @param idleTimeoutSeconds
+     *            time after which idle connections are closed
+     * @return the pool or null if the HTTP client does not use a pooling connection manager
+     */
+    static SuiConnectionPool install(final int maxTotal, final int maxPerRoute, final long idleTimeoutSeconds) {
+        final HttpClient httpClient = HttpClientSupport.getHttpClient();
+        final ClientConnectionManager connectionManager = httpClient.getConnectionManager();
+        if (!(httpClient instanceof AbstractHttpClient)
+                || !(connectionManager instanceof ThreadSafeClientConnManager)) {
+            logger.warn("Connection pool of the HTTP client {} can not be managed", httpClient.getClass().getName());
+            return null;
+        }
+        final ThreadSafeClientConnManager pool = (ThreadSafeClientConnManager) connectionManager;
+        pool.setMaxTotal(maxTotal);
+        pool.setDefaultMaxPerRoute(maxPerRoute);
+        logger.info("HTTP connection pool: {} connections, {} per host, idle timeout {} s", maxTotal, maxPerRoute,
+                idleTimeoutSeconds);
+        return new SuiConnectionPool((AbstractHttpClient) httpClient, pool, idleTimeoutSeconds);
+    }
+
+    private final class ConnectionCounter implements HttpRequestInterceptor {
+        @Override
+        public void process(final HttpRequest request, final HttpContext context) {
+            if (request instanceof HttpEntityEnclosingRequest) {
+                final HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+                if (entity != null && entity.getContentLength() >= 0) {
+                    SuiMetrics.current().recordRequestSize(entity.getContentLength());
+                }
+            }
+            final Object connection = context.getAttribute(ExecutionContext.HTTP_CONNECTION);
+            if (connection instanceof HttpConnection) {
+                // the current request is counted after it has been sent
+                if (((HttpConnection) connection).getMetrics().getRequestCount() == 0) {
+                    created.incrementAndGet();
+                } else {
+                    reused.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    private final class ResponseCounter implements HttpResponseInterceptor {
+        @Override
+        public void process(final HttpResponse response, final HttpContext context) {
+            final HttpEntity entity = response.getEntity();
+            if (entity != null && entity.getContentLength() >= 0) {
+                // the size of chunked responses is not known before they are read
+                SuiMetrics.current().recordResponseSize(entity.getContentLength());
+            }
+        }
+    }
+
+    /**
+     * @return open connections, leased and available
+     */
+    int getConnectionsInPool() {
+        return connectionManager.getConnectionsInPool();
+    }
+
+    int getMaxTotal() {
+        return connectionManager.getMaxTotal();
+    }
+
+    long getCreated() {
+        return created.get();
+    }
+
+    long getReused() {
+        return reused.get();
+    }
+
+    /**
+     * @return requests that have been sent, or are about to be sent, and whose responses have not been received yet
+     */
+    long getPending() {
+        return inFlight.get();
+    }
+
+    @Override
+    public String toString() {
+        return "connections in pool: " + getConnectionsInPool() + "/" + getMaxTotal()
+                + ", created: " + getCreated() + ", reused: " + getReused()
+                + ", requests in flight: " + getPending();
+    }
+
+    void release() {
+        evictor.shutdownNow();
+        wrappedTransports.forEach(RequestTransportRegistry::addTransport);
+        httpClient.removeRequestInterceptorByClass(ConnectionCounter.class);
+        httpClient.removeResponseInterceptorByClass(ResponseCounter.class);
+    }
+}
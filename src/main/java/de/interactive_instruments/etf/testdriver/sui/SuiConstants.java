@@ -30,4 +30,66 @@ final class SuiConstants {
     final static String DEPENDENCY_IDS_PROPERTY = "etf.dependency.ids";
 
     final static String TESTOBJECT_TYPE_IDS_PROPERTY = "etf.testobject.ids";
+
+    // Test Suite property: never run the suite in parallel with other suites
+    final static String SEQUENTIAL_PROPERTY = "etf.sequential";
+
+    // Driver configuration: number of test suites that are executed in parallel
+    final static String PARALLEL_WORKERS_CONFIG = "etf.testdrivers.sui.parallel.workers";
+
+    // Driver configuration: number of independent test cases of a test suite that are executed in parallel
+    final static String TESTCASE_WORKERS_CONFIG = "etf.testdrivers.sui.parallel.testcase.workers";
+
+    // Driver configuration: run the test suite and test case workers on virtual threads, requires Java 21
+    final static String VIRTUAL_THREADS_CONFIG = "etf.testdrivers.sui.parallel.virtual";
+
+    // Test task argument prefix: SoapUI settings that only apply to the project of the test task
+    final static String SETTINGS_ARGUMENT_PREFIX = "soapui.settings.";
+
+    // Driver configuration: number of project files that are parsed in parallel, defaults to the number of cores
+    final static String LOADER_WORKERS_CONFIG = "etf.testdrivers.sui.loader.workers";
+
+    // Driver configuration: directory of the persistent Executable Test Suite cache, see SuiCacheDir for the default
+    final static String ETS_CACHE_DIR_CONFIG = "etf.testdrivers.sui.cache.dir";
+
+    // Driver configuration: number of Executable Test Suites persisted together during the initial load, 1 disables it
+    final static String LOADER_BATCH_SIZE_CONFIG = "etf.testdrivers.sui.loader.batch.size";
+
+    // Driver configuration: HTTP connections shared by all test tasks, in total and per host
+    final static String HTTP_MAX_TOTAL_CONFIG = "etf.testdrivers.sui.http.max.connections";
+
+    final static String HTTP_MAX_PER_ROUTE_CONFIG = "etf.testdrivers.sui.http.max.connections.host";
+
+    // Driver configuration: seconds after which idle HTTP connections are closed
+    final static String HTTP_IDLE_TIMEOUT_CONFIG = "etf.testdrivers.sui.http.idle.timeout";
+
+    // Driver configuration: maximum size of the HTTP response cache in MB, 0 disables the cache
+    final static String HTTP_CACHE_SIZE_CONFIG = "etf.testdrivers.sui.http.cache.size";
+
+    // Driver configuration: directory of the persistent cache of WSDL and XML Schema definitions, see SuiCacheDir for
+    // the default
+    final static String DEFINITION_CACHE_DIR_CONFIG = "etf.testdrivers.sui.definition.cache.dir";
+
+    // Driver configuration: minutes after which cached definitions are revalidated, defaults to 1440
+    final static String DEFINITION_CACHE_MAX_AGE_CONFIG = "etf.testdrivers.sui.definition.cache.max.age";
+
+    // Driver configuration: share compiled Groovy script classes between the test tasks, enabled by default
+    final static String GROOVY_CACHE_CONFIG = "etf.testdrivers.sui.groovy.cache";
+
+    // Driver configuration: pass the raw response bodies of the test tasks to the assertions through the response
+    // store, disabled by default
+    final static String RESPONSE_STORE_CONFIG = "etf.testdrivers.sui.response.store";
+
+    // Driver configuration: directory of the durations of previous test runs, see SuiCacheDir for the default
+    final static String DURATION_STORE_DIR_CONFIG = "etf.testdrivers.sui.durations.dir";
+
+    // Driver configuration: backend of the test run metrics, none (default) or jmx. The metrics are only exported by
+    // the driver, the Micrometer registries of the hosting application are not populated
+    final static String METRICS_BACKEND_CONFIG = "etf.testdrivers.sui.metrics";
+
+    // Project property: use the HTTP response cache for the test tasks of the Executable Test Suite. Note that the
+    // driver then adds If-None-Match and If-Modified-Since headers to the requests and replaces a "304 Not Modified"
+    // of the server with a "200 OK" and the cached response. Steps with assertions on the HTTP status or on headers
+    // are excluded, see SuiResponseCache
+    final static String HTTP_CACHE_PROPERTY = "etf.http.cache";
 }
@@ -0,0 +1,301 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.eviware.soapui.config.DefinitionCacheConfig;
+import com.eviware.soapui.config.InterfaceConfig;
+import com.eviware.soapui.config.SoapuiProjectDocumentConfig;
+import com.eviware.soapui.config.WsdlInterfaceConfig;
+
+import org.apache.xmlbeans.XmlException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Disk cache of the interface definitions (WSDL and XML Schema documents) of the projects.
+ *
+ * SoapUI stores the downloaded definitions of an interface in its definition cache in the project document. Cached
+ * definitions are written to the disk. The definitions of a URL are stored under the hash of their content, an index
+ * entry per URL references the current content with the validators of the definition URL: the ETag and the
+ * Last-Modified header of HTTP URLs or the modification time and size of files. Interfaces of project templates that
+ * are missing a definition cache get the cached definitions injected, so test tasks do not download the definitions
+ * again.
+ *
+ * Entries older than the maximum age are revalidated against the definition URL before they are used, entries that
+ * can not be revalidated are deleted. Only the definition URL is revalidated, not the documents it imports.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class SuiDefinitionCache {
+
+    private final static Logger logger = LoggerFactory.getLogger(SuiDefinitionCache.class);
+    private final static int TIMEOUT_MILLIS = 10000;
+    private final File dir;
+    private final long maxAgeMillis;
+    private final boolean enabled;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param dir
+     *            the cache directory
+     * @param maxAgeMillis
+     *            age after which entries are revalidated
+     */
+    SuiDefinitionCache(final File dir, final long maxAgeMillis) {
+        this.dir = dir;
+        this.maxAgeMillis = maxAgeMillis;
+        this.enabled = SuiCacheDir.prepare(dir);
+    }
+
+    private static String hash(final byte[] bytes) {
+        return SuiFileHash.toHex(SuiFileHash.newDigest().digest(bytes));
+    }
+
+    private File index(final String definitionUrl) {
+        return new File(dir, hash(definitionUrl.getBytes(StandardCharsets.UTF_8)) + ".properties");
+    }
+
+    private File content(final String definitionUrl, final String contentHash) {
+        return new File(dir, hash(definitionUrl.getBytes(StandardCharsets.UTF_8)).substring(0, 32) + "-"
+                + contentHash + ".xml");
+    }
+
+    /**
+     * Store the definition caches of the interfaces of a project document and inject cached definitions into the
+     * interfaces without definition cache
+     *
+     * @param document
+     *            the document of a project template that is not used yet
+     */
+    void update(final SoapuiProjectDocumentConfig document) {
+        if (!enabled || document.getSoapuiProject() == null) {
+            return;
+        }
+        for (final InterfaceConfig interfaceConfig : document.getSoapuiProject().getInterfaceList()) {
+            if (!(interfaceConfig instanceof WsdlInterfaceConfig)) {
+                continue;
+            }
+            final WsdlInterfaceConfig wsdlInterface = (WsdlInterfaceConfig) interfaceConfig;
+            final String definitionUrl = wsdlInterface.getDefinition();
+            if (definitionUrl == null) {
+                continue;
+            }
+            try {
+                if (wsdlInterface.isSetDefinitionCache() && wsdlInterface.getDefinitionCache().sizeOfPartArray() > 0) {
+                    store(definitionUrl, wsdlInterface.getDefinitionCache());
+                } else {
+                    final DefinitionCacheConfig cached = load(definitionUrl);
+                    if (cached == null) {
+                        misses.incrementAndGet();
+                    } else {
+                        hits.incrementAndGet();
+                        wsdlInterface.setDefinitionCache(cached);
+                        logger.debug("Using cached definitions of {}", definitionUrl);
+                    }
+                }
+            } catch (final IOException | XmlException e) {
+                logger.warn("Could not access cached definitions of {}", definitionUrl, e);
+            }
+        }
+    }
+
+    private void store(final String definitionUrl, final DefinitionCacheConfig definitionCache) throws IOException {
+        final byte[] content = definitionCache.xmlText().getBytes(StandardCharsets.UTF_8);
+        final String contentHash = hash(content);
+        final Properties index = readIndex(definitionUrl);
+        if (index != null && contentHash.equals(index.getProperty("content"))
+                && content(definitionUrl, contentHash).isFile()) {
+            // unchanged
+            return;
+        }
+        final File entry = content(definitionUrl, contentHash);
+        write(entry, content);
+
+        final Properties updated = new Properties();
+        updated.setProperty("url", definitionUrl);
+        updated.setProperty("content", contentHash);
+        updated.setProperty("stored", String.valueOf(System.currentTimeMillis()));
+        final Properties validators = validators(definitionUrl, null);
+        if (validators != null) {
+            updated.putAll(validators);
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        updated.store(out, null);
+        write(index(definitionUrl), out.toByteArray());
+        if (index != null && !contentHash.equals(index.getProperty("content"))) {
+            content(definitionUrl, index.getProperty("content", "")).delete();
+        }
+    }
+
+    private void write(final File file, final byte[] content) throws IOException {
+        final File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+        try {
+            Files.write(tmp.toPath(), content);
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    private Properties readIndex(final String definitionUrl) throws IOException {
+        final File file = index(definitionUrl);
+        if (!file.isFile()) {
+            return null;
+        }
+        final Properties index = new Properties();
+        try (final InputStream in = new FileInputStream(file)) {
+            index.load(in);
+        }
+        // hash collision or foreign file
+        return definitionUrl.equals(index.getProperty("url")) ? index : null;
+    }
+
+    private DefinitionCacheConfig load(final String definitionUrl) throws IOException, XmlException {
+        final Properties index = readIndex(definitionUrl);
+        if (index == null) {
+            return null;
+        }
+        final String contentHash = index.getProperty("content", "");
+        final File entry = content(definitionUrl, contentHash);
+        if (!entry.isFile() || !SuiFileHash.of(entry).equals(contentHash) || !isValid(definitionUrl, index)) {
+            logger.debug("Removing outdated definitions of {}", definitionUrl);
+            index(definitionUrl).delete();
+            entry.delete();
+            return null;
+        }
+        return DefinitionCacheConfig.Factory.parse(entry);
+    }
+
+    /**
+     * Checks if the entry is younger than the maximum age or revalidates it, a revalidated entry is renewed
+     */
+    private boolean isValid(final String definitionUrl, final Properties index) throws IOException {
+        final long stored = Long.parseLong(index.getProperty("stored", "0"));
+        if (System.currentTimeMillis() - stored < maxAgeMillis) {
+            return true;
+        }
+        final Properties validators = validators(definitionUrl, index);
+        if (validators == null || !validators.equals(validators(index))) {
+            return false;
+        }
+        index.setProperty("stored", String.valueOf(System.currentTimeMillis()));
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        index.store(out, null);
+        write(index(definitionUrl), out.toByteArray());
+        return true;
+    }
+
+    private static Properties validators(final Properties index) {
+        final Properties validators = new Properties();
+        for (final String key : new String[]{"etag", "lastModified", "length"}) {
+            if (index.getProperty(key) != null) {
+                validators.setProperty(key, index.getProperty(key));
+            }
+        }
+        return validators;
+    }
+
+    /**
+     * Get the current validators of the definition URL
+     *
+     * @param definitionUrl
+     *            the definition URL
+     * @param index
+     *            the index entry with the stored validators, which are sent as conditions, or null
+     * @return the validators or null if the URL does not provide validators
+     */
+    private static Properties validators(final String definitionUrl, final Properties index) {
+        final Properties validators = new Properties();
+        try {
+            final URL url = new URL(definitionUrl);
+            if ("file".equals(url.getProtocol())) {
+                final File file = new File(url.toURI());
+                if (!file.isFile()) {
+                    return null;
+                }
+                validators.setProperty("lastModified", String.valueOf(file.lastModified()));
+                validators.setProperty("length", String.valueOf(file.length()));
+                return validators;
+            }
+            final URLConnection connection = url.openConnection();
+            if (!(connection instanceof HttpURLConnection)) {
+                return null;
+            }
+            final HttpURLConnection http = (HttpURLConnection) connection;
+            try {
+                http.setRequestMethod("HEAD");
+                http.setConnectTimeout(TIMEOUT_MILLIS);
+                http.setReadTimeout(TIMEOUT_MILLIS);
+                if (index != null && index.getProperty("etag") != null) {
+                    http.setRequestProperty("If-None-Match", index.getProperty("etag"));
+                }
+                if (index != null && index.getProperty("lastModified") != null) {
+                    http.setRequestProperty("If-Modified-Since", index.getProperty("lastModified"));
+                }
+                final int status = http.getResponseCode();
+                if (status == HttpURLConnection.HTTP_NOT_MODIFIED && index != null) {
+                    return validators(index);
+                }
+                if (status != HttpURLConnection.HTTP_OK) {
+                    return null;
+                }
+                if (http.getHeaderField("ETag") != null) {
+                    validators.setProperty("etag", http.getHeaderField("ETag"));
+                }
+                if (http.getHeaderField("Last-Modified") != null) {
+                    validators.setProperty("lastModified", http.getHeaderField("Last-Modified"));
+                }
+                return validators.isEmpty() ? null : validators;
+            } finally {
+                http.disconnect();
+            }
+        } catch (final Exception e) {
+            logger.debug("Could not get validators of {}", definitionUrl, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return interfaces without definition cache that got the cached definitions injected
+     */
+    long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return interfaces without definition cache for which no definitions were cached
+     */
+    long getMisses() {
+        return misses.get();
+    }
+}
@@ -0,0 +1,270 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.interactive_instruments.exceptions.InvalidStateTransitionException;
+
+/**
+ * Exposes the state of the test tasks, the connection pool and the caches of the driver over JMX.
+ *
+ * Test tasks are tracked from their creation until they are completed, failed, canceled or released. They are
+ * referenced weakly, so tasks that are dropped by the framework without being released are not kept either.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class SuiDriverManagement implements SuiTestDriverMXBean {
+
+    final static String OBJECT_NAME = "de.interactive_instruments.etf:type=TestDriver,name=SoapUI";
+    private final static Logger logger = LoggerFactory.getLogger(SuiDriverManagement.class);
+
+    private final Map<String, WeakReference<SuiTestTask>> tasks = new ConcurrentHashMap<>();
+    private final SuiProjectTemplateCache projectTemplateCache;
+    private final SuiFileLoaderFactory loader;
+    private final SuiConnectionPool connectionPool;
+    private final SuiResponseCache responseCache;
+    private final SuiGroovyScriptCache scriptCache;
+    private ObjectName objectName;
+
+    SuiDriverManagement(final SuiProjectTemplateCache projectTemplateCache, final SuiFileLoaderFactory loader,
+            final SuiConnectionPool connectionPool, final SuiResponseCache responseCache,
+            final SuiGroovyScriptCache scriptCache) {
+        this.projectTemplateCache = projectTemplateCache;
+        this.loader = loader;
+        this.connectionPool = connectionPool;
+        this.responseCache = responseCache;
+        this.scriptCache = scriptCache;
+    }
+
+    /**
+     * Register the bean at the platform MBean server. Failures are logged, as the driver works without it.
+     */
+    void register() {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                // left over from a previous driver instance
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+            objectName = name;
+        } catch (final JMException e) {
+            logger.warn("Could not register management bean {}", OBJECT_NAME, e);
+        }
+    }
+
+    void track(final SuiTestTask task) {
+        prune();
+        tasks.put(task.getTaskId(), new WeakReference<>(task));
+    }
+
+    private void prune() {
+        tasks.values().removeIf(ref -> {
+            final SuiTestTask task = ref.get();
+            return task == null || task.getPhase().isTerminal();
+        });
+    }
+
+    private int count(final SuiTestTask.Phase phase) {
+        int count = 0;
+        for (final WeakReference<SuiTestTask> ref : tasks.values()) {
+            final SuiTestTask task = ref.get();
+            if (task != null && task.getPhase() == phase) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int getActiveTaskCount() {
+        return count(SuiTestTask.Phase.RUNNING);
+    }
+
+    @Override
+    public int getQueuedTaskCount() {
+        return count(SuiTestTask.Phase.QUEUED);
+    }
+
+    @Override
+    public String[] getTasks() {
+        prune();
+        final List<String> lines = new ArrayList<>(tasks.size());
+        for (final Map.Entry<String, WeakReference<SuiTestTask>> entry : tasks.entrySet()) {
+            final SuiTestTask task = entry.getValue().get();
+            if (task == null) {
+                continue;
+            }
+            lines.add(entry.getKey() + " '" + task.getEtsLabel() + "' " + task.getPhase()
+                    + ", elapsed: " + task.getElapsedMillis() + " ms, " + task.getProgressSnapshot());
+        }
+        return lines.toArray(new String[0]);
+    }
+
+    @Override
+    public int getConnectionsInPool() {
+        return connectionPool != null ? connectionPool.getConnectionsInPool() : 0;
+    }
+
+    @Override
+    public int getMaxConnections() {
+        return connectionPool != null ? connectionPool.getMaxTotal() : 0;
+    }
+
+    @Override
+    public long getConnectionsCreated() {
+        return connectionPool != null ? connectionPool.getCreated() : 0;
+    }
+
+    @Override
+    public long getConnectionsReused() {
+        return connectionPool != null ? connectionPool.getReused() : 0;
+    }
+
+    @Override
+    public long getPendingRequests() {
+        return connectionPool != null ? connectionPool.getPending() : 0;
+    }
+
+    @Override
+    public long getProjectCacheHits() {
+        return projectTemplateCache.getHits();
+    }
+
+    @Override
+    public long getProjectCacheMisses() {
+        return projectTemplateCache.getMisses();
+    }
+
+    @Override
+    public long getEtsCacheHits() {
+        final SuiEtsCache etsCache = loader.getEtsCache();
+        return etsCache != null ? etsCache.getHits() : 0;
+    }
+
+    @Override
+    public long getEtsCacheMisses() {
+        final SuiEtsCache etsCache = loader.getEtsCache();
+        return etsCache != null ? etsCache.getMisses() : 0;
+    }
+
+    @Override
+    public long getDefinitionCacheHits() {
+        final SuiDefinitionCache definitionCache = projectTemplateCache.getDefinitionCache();
+        return definitionCache != null ? definitionCache.getHits() : 0;
+    }
+
+    @Override
+    public long getDefinitionCacheMisses() {
+        final SuiDefinitionCache definitionCache = projectTemplateCache.getDefinitionCache();
+        return definitionCache != null ? definitionCache.getMisses() : 0;
+    }
+
+    @Override
+    public long getScriptCacheHits() {
+        return scriptCache != null ? scriptCache.getHits() : 0;
+    }
+
+    @Override
+    public long getScriptCacheMisses() {
+        return scriptCache != null ? scriptCache.getMisses() : 0;
+    }
+
+    @Override
+    public long getResponseCacheHits() {
+        return responseCache != null ? responseCache.getHits() : 0;
+    }
+
+    @Override
+    public long getResponseCacheMisses() {
+        return responseCache != null ? responseCache.getCacheable() - responseCache.getHits() : 0;
+    }
+
+    @Override
+    public long getResponseCacheSize() {
+        return responseCache != null ? responseCache.getSize() : 0;
+    }
+
+    @Override
+    public int getLoadedEtsCount() {
+        return loader.getLoadedCount();
+    }
+
+    @Override
+    public long getLastLoadMillis() {
+        return loader.getLastLoadMillis();
+    }
+
+    @Override
+    public boolean cancelTask(final String taskId) {
+        final WeakReference<SuiTestTask> ref = tasks.get(taskId);
+        final SuiTestTask task = ref != null ? ref.get() : null;
+        if (task == null) {
+            return false;
+        }
+        try {
+            task.cancel();
+            logger.info("Test task {} cancelled over JMX", taskId);
+            return true;
+        } catch (final InvalidStateTransitionException e) {
+            logger.warn("Could not cancel test task {}", taskId, e);
+            return false;
+        }
+    }
+
+    @Override
+    public void evictCaches() {
+        projectTemplateCache.clear();
+        if (responseCache != null) {
+            responseCache.clear();
+        }
+        if (scriptCache != null) {
+            scriptCache.clear();
+        }
+        logger.info("Caches evicted over JMX");
+    }
+
+    void release() {
+        tasks.clear();
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (final JMException e) {
+                logger.warn("Could not unregister management bean {}", OBJECT_NAME, e);
+            }
+            objectName = null;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.interactive_instruments.etf.dal.dao.Dao;
+import de.interactive_instruments.etf.dal.dao.DataStorage;
+import de.interactive_instruments.etf.dal.dto.Dto;
+import de.interactive_instruments.etf.dal.dto.capabilities.TagDto;
+import de.interactive_instruments.etf.dal.dto.translation.TranslationTemplateBundleDto;
+import de.interactive_instruments.etf.model.EID;
+import de.interactive_instruments.exceptions.ObjectWithIdNotFoundException;
+import de.interactive_instruments.exceptions.StorageException;
+
+/**
+ * Memoized lookups of the Tags and Translation Template Bundles that are referenced by the Executable Test Suites.
+ *
+ * Most Executable Test Suites reference the same few items. Within one load session each item is fetched only
+ * once and the same instance is shared by all Executable Test Suites. The {@link SuiLoadPipeline} starts a new
+ * session when it starts loading a new batch of project files.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class SuiDtoLookup {
+
+    private final Dao<TagDto> tagDao;
+    private final Dao<TranslationTemplateBundleDto> translationTemplateBundleDao;
+    private final ConcurrentMap<EID, TagDto> tags = new ConcurrentHashMap<>();
+    private final ConcurrentMap<EID, TranslationTemplateBundleDto> translationTemplateBundles = new ConcurrentHashMap<>();
+    private final AtomicLong fetches = new AtomicLong();
+
+    SuiDtoLookup(final DataStorage dataStorageCallback) {
+        this.tagDao = dataStorageCallback.getDao(TagDto.class);
+        this.translationTemplateBundleDao = dataStorageCallback.getDao(TranslationTemplateBundleDto.class);
+    }
+
+    TagDto getTag(final EID id) throws StorageException, ObjectWithIdNotFoundException {
+        return get(tags, tagDao, id);
+    }
+
+    TranslationTemplateBundleDto getTranslationTemplateBundle(final EID id)
+            throws StorageException, ObjectWithIdNotFoundException {
+        return get(translationTemplateBundles, translationTemplateBundleDao, id);
+    }
+
+    private <T extends Dto> T get(final ConcurrentMap<EID, T> memo, final Dao<T> dao, final EID id)
+            throws StorageException, ObjectWithIdNotFoundException {
+        final T cached = memo.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        // items that are not found are not memoized, they may be loaded later
+        fetches.incrementAndGet();
+        final T fetched = dao.getById(id).getDto();
+        final T existing = memo.putIfAbsent(id, fetched);
+        return existing != null ? existing : fetched;
+    }
+
+    /**
+     * Start a new session
+     */
+    void clear() {
+        tags.clear();
+        translationTemplateBundles.clear();
+    }
+
+    long getFetches() {
+        return fetches.get();
+    }
+}
@@ -0,0 +1,261 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.interactive_instruments.etf.model.EID;
+
+/**
+ * Persistent duration statistics of the test suites and test cases of previous runs, per Executable Test Suite and
+ * test object host.
+ *
+ * For each item an exponentially weighted moving average and the durations of the last runs are kept. The 95th
+ * percentile of the durations is used to start long running test suites and test cases first, the average to estimate
+ * the remaining time of a test task.
+ *
+ * The statistics are stored in a plain binary format, in a directory that is not writable by other users, see
+ * {@link SuiCacheDir}. Test tasks that run concurrently for the same Executable Test Suite and host share one
+ * instance of the statistics, so that the durations of all tasks are recorded and saved. Driver instances that use
+ * the same directory do not share the statistics, the last one that saves them wins.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class SuiDurationStore {
+
+    private final static Logger logger = LoggerFactory.getLogger(SuiDurationStore.class);
+    private final static String SUFFIX = ".durations";
+    private final static int FORMAT_VERSION = 1;
+    // key of the duration of the whole project run
+    final static String PROJECT_KEY = "";
+    private final File dir;
+    private final boolean enabled;
+    // statistics in use by test tasks, guarded by the map
+    private final Map<File, Durations> shared = new HashMap<>();
+
+    SuiDurationStore(final File dir) {
+        this.dir = dir;
+        this.enabled = SuiCacheDir.prepare(dir);
+    }
+
+    /**
+     * Duration statistics of one item
+     */
+    private final static class Stats {
+        private final static double ALPHA = 0.3;
+        private final static int SAMPLES = 20;
+
+        private double mean;
+        private final long[] samples = new long[SAMPLES];
+        private long count;
+
+        private void add(final long millis) {
+            mean = count == 0 ? millis : ALPHA * millis + (1 - ALPHA) * mean;
+            samples[(int) (count % SAMPLES)] = millis;
+            count++;
+        }
+
+        private long p95() {
+            final int n = (int) Math.min(count, SAMPLES);
+            final long[] sorted = Arrays.copyOf(samples, n);
+            Arrays.sort(sorted);
+            return sorted[Math.max(0, (int) Math.ceil(n * 0.95) - 1)];
+        }
+
+        private void write(final DataOutput out) throws IOException {
+            out.writeDouble(mean);
+            out.writeLong(count);
+            final int n = (int) Math.min(count, SAMPLES);
+            out.writeInt(n);
+            for (int i = 0; i < n; i++) {
+                out.writeLong(samples[i]);
+            }
+        }
+
+        private static Stats read(final DataInput in) throws IOException {
+            final Stats stats = new Stats();
+            stats.mean = in.readDouble();
+            stats.count = in.readLong();
+            final int n = in.readInt();
+            if (stats.count < 0 || n != Math.min(stats.count, SAMPLES)) {
+                throw new IOException("Invalid duration statistics");
+            }
+            for (int i = 0; i < n; i++) {
+                stats.samples[i] = in.readLong();
+            }
+            return stats;
+        }
+    }
+
+    /**
+     * The statistics of an Executable Test Suite and test object host, updated by a test task
+     */
+    final static class Durations {
+        private final File file;
+        private final Map<String, Stats> stats;
+        private boolean modified;
+        // number of test tasks that use the statistics, guarded by the shared map of the store
+        private int users;
+
+        private Durations(final File file, final Map<String, Stats> stats) {
+            this.file = file;
+            this.stats = stats;
+        }
+
+        /**
+         * Record the duration of a run
+         *
+         * @param key
+         *            the item, see {@link #suiteKey} and {@link #testCaseKey}
+         * @param millis
+         *            duration in milliseconds
+         */
+        synchronized void record(final String key, final long millis) {
+            stats.computeIfAbsent(key, k -> new Stats()).add(millis);
+            modified = true;
+        }
+
+        /**
+         * @return the weighted mean duration in milliseconds or -1 if the item has not been run before
+         */
+        synchronized long getMean(final String key) {
+            final Stats s = stats.get(key);
+            return s != null ? Math.round(s.mean) : -1;
+        }
+
+        /**
+         * @return the 95th percentile of the last durations in milliseconds or -1 if the item has not been run before
+         */
+        synchronized long getP95(final String key) {
+            final Stats s = stats.get(key);
+            return s != null ? s.p95() : -1;
+        }
+
+        synchronized boolean isEmpty() {
+            return stats.isEmpty();
+        }
+    }
+
+    static String suiteKey(final String suiteName) {
+        return "TS/" + suiteName;
+    }
+
+    static String testCaseKey(final String suiteName, final String testCaseName) {
+        return "TC/" + suiteName + "/" + testCaseName;
+    }
+
+    private File entry(final EID etsId, final String host) {
+        final String key = etsId.getId() + "@" + (host != null ? host : "");
+        return new File(dir, SuiFileHash.toHex(SuiFileHash.newDigest().digest(key.getBytes(StandardCharsets.UTF_8)))
+                .substring(0, 32) + SUFFIX);
+    }
+
+    /**
+     * Load the statistics of previous runs, or get the statistics that are already in use by another test task.
+     * Must be released with {@link #release(Durations)}.
+     *
+     * @param etsId
+     *            ID of the Executable Test Suite
+     * @param host
+     *            host of the test object or null
+     * @return the statistics, empty if there are none
+     */
+    Durations load(final EID etsId, final String host) {
+        final File file = entry(etsId, host);
+        synchronized (shared) {
+            final Durations durations = shared.computeIfAbsent(file, this::read);
+            durations.users++;
+            return durations;
+        }
+    }
+
+    /**
+     * Called by a test task that does not use the statistics any longer
+     */
+    void release(final Durations durations) {
+        synchronized (shared) {
+            if (--durations.users == 0) {
+                shared.remove(durations.file);
+            }
+        }
+    }
+
+    private Durations read(final File file) {
+        if (enabled && file.isFile()) {
+            try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() != FORMAT_VERSION) {
+                    throw new IOException("Unknown format");
+                }
+                final int size = in.readInt();
+                final Map<String, Stats> stats = new HashMap<>();
+                for (int i = 0; i < size; i++) {
+                    stats.put(in.readUTF(), Stats.read(in));
+                }
+                return new Durations(file, stats);
+            } catch (final IOException e) {
+                logger.warn("Removing unreadable duration statistics {}", file, e);
+                file.delete();
+            }
+        }
+        return new Durations(file, new HashMap<>());
+    }
+
+    /**
+     * Persist the statistics if they have been updated
+     */
+    void save(final Durations durations) {
+        synchronized (durations) {
+            if (!durations.modified || !enabled) {
+                return;
+            }
+            try {
+                final File tmp = File.createTempFile(durations.file.getName(), ".tmp", dir);
+                try {
+                    try (final DataOutputStream out = new DataOutputStream(
+                            new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                        out.writeInt(FORMAT_VERSION);
+                        out.writeInt(durations.stats.size());
+                        for (final Map.Entry<String, Stats> entry : durations.stats.entrySet()) {
+                            out.writeUTF(entry.getKey());
+                            entry.getValue().write(out);
+                        }
+                    }
+                    Files.move(tmp.toPath(), durations.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                    durations.modified = false;
+                } finally {
+                    tmp.delete();
+                }
+            } catch (final IOException e) {
+                logger.warn("Could not save duration statistics {}", durations.file, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.interactive_instruments.etf.dal.dto.test.ExecutableTestSuiteDto;
+import de.interactive_instruments.etf.sel.mapping.EtsMapper;
+
+/**
+ * Persistent cache of mapped Executable Test Suites, which allows to skip parsing unchanged project files on
+ * restarts.
+ *
+ * The Executable Test Suites are stored as they are returned by the {@link EtsMapper}, before translation template
+ * bundles, tags, parameters and dependencies are added, as these are resolved again on each load. An entry is
+ * identified by the path of the project file, the content hash of the file and the versions of the driver and the
+ * mapper. Outdated entries of a project file are deleted when a new entry is written.
+ *
+ * Entries are the Executable Test Suites in Java serialization, compressed with gzip, as the DTO model does not
+ * provide another binary form. They are only read from a directory that is not writable by other users, see
+ * {@link SuiCacheDir}, and only classes of the DTO model can be deserialized. If an Executable Test Suite cannot be
+ * serialized, the cache is disabled and all project files are parsed on each start.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class SuiEtsCache {
+
+    private final static Logger logger = LoggerFactory.getLogger(SuiEtsCache.class);
+    private final static String SUFFIX = ".ets.gz";
+    private final static String[] ALLOWED = {
+            "de.interactive_instruments.etf.dal.dto",
+            "de.interactive_instruments.etf.model",
+            "de.interactive_instruments.properties",
+            "de.interactive_instruments.Version"
+    };
+    private final File dir;
+    private volatile boolean enabled;
+    private final String versionKey;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    SuiEtsCache(final File dir) {
+        this.dir = dir;
+        this.enabled = SuiCacheDir.prepare(dir);
+        this.versionKey = shortHash(version(SuiTestDriver.class) + "/" + version(EtsMapper.class));
+    }
+
+    private static String version(final Class<?> c) {
+        final String version = c.getPackage() != null ? c.getPackage().getImplementationVersion() : null;
+        if (version != null && !version.endsWith("SNAPSHOT")) {
+            return version;
+        }
+        // development builds: use the time the classes were built
+        try {
+            return version + "@" + new File(c.getProtectionDomain().getCodeSource().getLocation().toURI())
+                    .lastModified();
+        } catch (final Exception e) {
+            return version + "@" + System.currentTimeMillis();
+        }
+    }
+
+    private static String shortHash(final String value) {
+        return SuiFileHash.toHex(SuiFileHash.newDigest().digest(value.getBytes(StandardCharsets.UTF_8)))
+                .substring(0, 16);
+    }
+
+    private String prefix(final File projectFile) {
+        return shortHash(projectFile.getAbsolutePath()) + "-";
+    }
+
+    private File entry(final File projectFile, final String hash) {
+        return new File(dir, prefix(projectFile) + hash + "-" + versionKey + SUFFIX);
+    }
+
+    /**
+     * Get the cached Executable Test Suite
+     *
+     * @param projectFile
+     *            the project file
+     * @param hash
+     *            the content hash of the project file
+     * @return the Executable Test Suite or null if it is not cached
+     */
+    ExecutableTestSuiteDto get(final File projectFile, final String hash) {
+        final File entry = entry(projectFile, hash);
+        if (!enabled || !entry.isFile()) {
+            misses.incrementAndGet();
+            return null;
+        }
+        try (final ObjectInputStream in = new SuiObjectInputStream(
+                new GZIPInputStream(new BufferedInputStream(new FileInputStream(entry))), ALLOWED)) {
+            final ExecutableTestSuiteDto executableTestSuite = (ExecutableTestSuiteDto) in.readObject();
+            hits.incrementAndGet();
+            return executableTestSuite;
+        } catch (final IOException | ClassNotFoundException | ClassCastException e) {
+            logger.warn("Removing unreadable cache entry {}", entry, e);
+            entry.delete();
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Store a mapped Executable Test Suite
+     *
+     * @param projectFile
+     *            the project file
+     * @param hash
+     *            the content hash of the project file
+     * @param executableTestSuite
+     *            the Executable Test Suite as returned by the mapper
+     */
+    void put(final File projectFile, final String hash, final ExecutableTestSuiteDto executableTestSuite) {
+        if (!enabled) {
+            return;
+        }
+        if (!(executableTestSuite instanceof Serializable)) {
+            disable(executableTestSuite.getClass().getName());
+            return;
+        }
+        final String prefix = prefix(projectFile);
+        final File entry = entry(projectFile, hash);
+        final File[] outdated = dir.listFiles((d, name) -> name.startsWith(prefix) && name.endsWith(SUFFIX));
+        if (outdated != null) {
+            for (final File file : outdated) {
+                if (!file.equals(entry)) {
+                    file.delete();
+                }
+            }
+        }
+        try {
+            final File tmp = File.createTempFile(prefix, ".tmp", dir);
+            try {
+                try (final ObjectOutputStream out = new ObjectOutputStream(
+                        new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tmp))))) {
+                    out.writeObject(executableTestSuite);
+                }
+                Files.move(tmp.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                tmp.delete();
+            }
+        } catch (final NotSerializableException e) {
+            // a class in the graph of the Executable Test Suite
+            disable(e.getMessage());
+        } catch (final IOException e) {
+            logger.warn("Could not cache Executable Test Suite from {}", projectFile, e);
+        }
+    }
+
+    private void disable(final String notSerializable) {
+        if (enabled) {
+            enabled = false;
+            logger.info("Executable Test Suite cache disabled, {} is not serializable", notSerializable);
+        }
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+}
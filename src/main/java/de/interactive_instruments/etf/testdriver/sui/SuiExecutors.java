@@ -0,0 +1,191 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates the worker pools for test suites and test cases.
+ *
+ * Test steps spend most of their time waiting for the responses of the test object. If virtual threads are
+ * requested and the runtime supports them (Java 21 or later), every task runs on its own virtual thread and the
+ * number of workers only limits the number of concurrently running tasks. Otherwise, or on older runtimes, a fixed
+ * pool of platform threads is used.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class SuiExecutors {
+
+    private final static Logger logger = LoggerFactory.getLogger(SuiExecutors.class);
+
+    // Thread.ofVirtual(), Thread.Builder.name(String, long), Thread.Builder.factory() and
+    // Executors.newThreadPerTaskExecutor(ThreadFactory), resolved at runtime as the driver is compiled for Java 8
+    private final static Method OF_VIRTUAL;
+    private final static Method BUILDER_NAME;
+    private final static Method BUILDER_FACTORY;
+    private final static Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+    static {
+        Method ofVirtual = null;
+        Method builderName = null;
+        Method builderFactory = null;
+        Method newThreadPerTaskExecutor = null;
+        try {
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            builderName = builderClass.getMethod("name", String.class, long.class);
+            builderFactory = builderClass.getMethod("factory");
+            newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+        } catch (final ClassNotFoundException | NoSuchMethodException ignore) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        BUILDER_NAME = builderName;
+        BUILDER_FACTORY = builderFactory;
+        NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+    }
+
+    private SuiExecutors() {}
+
+    /**
+     * @return true if the runtime supports virtual threads
+     */
+    static boolean isVirtualThreadSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Create a worker pool
+     *
+     * @param name
+     *            name used for the worker threads
+     * @param workers
+     *            maximum number of tasks that are executed concurrently
+     * @param virtual
+     *            run each task on a virtual thread, if supported by the runtime
+     * @return a new executor
+     */
+    static ExecutorService newWorkerPool(final String name, final int workers, final boolean virtual) {
+        if (virtual) {
+            if (isVirtualThreadSupported()) {
+                try {
+                    return new BoundedExecutor(newVirtualThreadPerTaskExecutor("etf-sui-" + name + "-v"), workers);
+                } catch (final ReflectiveOperationException e) {
+                    logger.warn("Could not create virtual threads, falling back to platform threads", e);
+                }
+            } else {
+                logger.warn("Virtual threads are not supported by Java {}, falling back to platform threads",
+                        System.getProperty("java.version"));
+            }
+        }
+        return Executors.newFixedThreadPool(workers, new WorkerFactory(name));
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor(final String prefix)
+            throws ReflectiveOperationException {
+        try {
+            final Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), prefix, 1L);
+            final ThreadFactory factory = (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+            return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, factory);
+        } catch (final InvocationTargetException e) {
+            throw new ReflectiveOperationException(e.getCause());
+        }
+    }
+
+    /**
+     * Limits the number of concurrently executed tasks of an executor that starts a thread per task. Tasks wait for a
+     * permit in their own thread, so submitting never blocks the caller.
+     */
+    private final static class BoundedExecutor extends AbstractExecutorService {
+        private final ExecutorService delegate;
+        private final Semaphore permits;
+
+        private BoundedExecutor(final ExecutorService delegate, final int workers) {
+            this.delegate = delegate;
+            this.permits = new Semaphore(workers);
+        }
+
+        @Override
+        public void execute(final Runnable command) {
+            delegate.execute(() -> {
+                try {
+                    permits.acquire();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                try {
+                    command.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+
+    private final static class WorkerFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        private WorkerFactory(final String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "etf-sui-" + name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
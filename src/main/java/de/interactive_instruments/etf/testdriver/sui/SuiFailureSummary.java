@@ -0,0 +1,217 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.eviware.soapui.impl.wsdl.submit.transports.http.HttpResponse;
+import com.eviware.soapui.model.iface.MessageExchange;
+import com.eviware.soapui.model.iface.Response;
+import com.eviware.soapui.model.testsuite.*;
+import com.eviware.soapui.model.testsuite.AssertionError;
+
+/**
+ * Bounded summary of the failures of a test run.
+ *
+ * Only the names, error messages and a digest of the response of the first failures are kept, up to the maximum
+ * number of errors of the runner, so that neither assertions nor step results are referenced after the step has
+ * finished. All failures are counted. Test cases are identified by their IDs, as names are only unique within a
+ * test suite, and are only remembered while they are running.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class SuiFailureSummary {
+
+    // upper bound of the tracked test cases, in case the end of a test case is not reported
+    private final static int MAX_TRACKED_TEST_CASES = 4096;
+    private final int maxRecords;
+    private final List<Record> records = new ArrayList<>();
+    private final List<String> failedTestCases = new ArrayList<>();
+    // IDs of the running test cases with failed assertions, removed when the test case has finished
+    private final Set<String> testCasesWithFailedAssertions = new HashSet<>();
+    private final AtomicInteger failedAssertionCount = new AtomicInteger();
+    private final AtomicInteger failedTestCaseCount = new AtomicInteger();
+
+    private final static class Record {
+        private final String testCase;
+        private final String testStep;
+        private final String assertion;
+        private final String[] messages;
+        private final String responseDigest;
+        private final long timeTaken;
+
+        private Record(final String testCase, final String testStep, final String assertion,
+                final String[] messages, final String responseDigest, final long timeTaken) {
+            this.testCase = testCase;
+            this.testStep = testStep;
+            this.assertion = assertion;
+            this.messages = messages;
+            this.responseDigest = responseDigest;
+            this.timeTaken = timeTaken;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder builder = new StringBuilder();
+            builder.append(assertion).append(" in [").append(testStep).append("] of TestCase [").append(testCase)
+                    .append("] failed after ").append(timeTaken).append("ms");
+            if (responseDigest != null) {
+                builder.append(", response ").append(responseDigest);
+            }
+            builder.append(";\n");
+            for (final String message : messages) {
+                builder.append("  ").append(message).append('\n');
+            }
+            return builder.toString();
+        }
+    }
+
+    /**
+     * @param maxRecords
+     *            number of failures that are recorded in detail
+     */
+    SuiFailureSummary(final int maxRecords) {
+        this.maxRecords = Math.max(0, maxRecords);
+    }
+
+    /**
+     * Record a failed assertion
+     *
+     * @param assertion
+     *            the failed assertion
+     * @param result
+     *            the result of the test step, which is not referenced after the call
+     */
+    void addFailedAssertion(final TestAssertion assertion, final TestStepResult result) {
+        failedAssertionCount.incrementAndGet();
+        final TestStep testStep = result.getTestStep();
+        final String testCase = testStep.getTestCase().getName();
+        synchronized (this) {
+            if (testCasesWithFailedAssertions.size() < MAX_TRACKED_TEST_CASES) {
+                testCasesWithFailedAssertions.add(testStep.getTestCase().getId());
+            }
+            if (records.size() >= maxRecords) {
+                return;
+            }
+        }
+        final AssertionError[] errors = assertion.getErrors();
+        final String[] messages = new String[errors != null ? errors.length : 0];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = errors[i].getMessage();
+        }
+        final Record record = new Record(testCase, testStep.getName(), assertion.getName(), messages,
+                digestResponse(result), result.getTimeTaken());
+        synchronized (this) {
+            if (records.size() < maxRecords) {
+                records.add(record);
+            }
+        }
+    }
+
+    private static String digestResponse(final TestStepResult result) {
+        if (!(result instanceof MessageExchange) || !((MessageExchange) result).hasResponse()) {
+            return null;
+        }
+        final Response response = ((MessageExchange) result).getResponse();
+        if (!(response instanceof HttpResponse)) {
+            return null;
+        }
+        final byte[] bytes = ((HttpResponse) response).getRawResponseBody();
+        if (bytes == null) {
+            return null;
+        }
+        return "sha256:" + SuiFileHash.toHex(SuiFileHash.newDigest().digest(bytes)) + " (" + bytes.length
+                + " bytes)";
+    }
+
+    /**
+     * Record the end of a test case run
+     *
+     * @param testCase
+     *            the finished test case
+     * @param failed
+     *            true if the test case failed
+     */
+    void testCaseFinished(final TestCase testCase, final boolean failed) {
+        if (failed) {
+            failedTestCaseCount.incrementAndGet();
+        }
+        synchronized (this) {
+            final boolean withFailedAssertions = testCasesWithFailedAssertions.remove(testCase.getId());
+            if (failed && !withFailedAssertions && failedTestCases.size() < maxRecords) {
+                failedTestCases.add("TestCase [" + testCase.getName() + "] (" + testCase.getId()
+                        + ") failed without assertions\n");
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return failedAssertionCount.get() == 0 && failedTestCaseCount.get() == 0;
+    }
+
+    int getFailedAssertionCount() {
+        return failedAssertionCount.get();
+    }
+
+    int getFailedTestCaseCount() {
+        return failedTestCaseCount.get();
+    }
+
+    synchronized void clear() {
+        records.clear();
+        failedTestCases.clear();
+        testCasesWithFailedAssertions.clear();
+        failedAssertionCount.set(0);
+        failedTestCaseCount.set(0);
+    }
+
+    /**
+     * @return the recorded failures in the order they occurred
+     */
+    synchronized List<String> getFailures() {
+        final List<String> failures = new ArrayList<>(records.size() + failedTestCases.size());
+        for (final Record record : records) {
+            failures.add(record.toString());
+        }
+        failures.addAll(failedTestCases);
+        return Collections.unmodifiableList(failures);
+    }
+
+    @Override
+    public synchronized String toString() {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(failedAssertionCount.get()).append(" failed assertions, ").append(failedTestCaseCount.get())
+                .append(" failed test cases\n");
+        for (final String failure : getFailures()) {
+            builder.append(failure);
+        }
+        final int omitted = failedAssertionCount.get() - records.size();
+        if (omitted > 0) {
+            builder.append(omitted).append(" further failed assertions omitted\n");
+        }
+        return builder.toString();
+    }
+}
@@ -22,18 +22,16 @@ package de.interactive_instruments.etf.testdriver.sui;
 
 import static de.interactive_instruments.etf.EtfConstants.ETF_TRANSLATION_TEMPLATE_BUNDLE_ID_PK;
 
-import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-import com.eviware.soapui.impl.wsdl.WsdlProject;
-import com.eviware.soapui.model.project.ProjectFactoryRegistry;
-import com.eviware.soapui.support.SoapUIException;
-
-import org.apache.xmlbeans.XmlException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,7 +40,6 @@ import de.interactive_instruments.SUtils;
 import de.interactive_instruments.etf.EtfConstants;
 import de.interactive_instruments.etf.component.loaders.AbstractItemFileLoader;
 import de.interactive_instruments.etf.component.loaders.ItemFileLoaderResultListener;
-import de.interactive_instruments.etf.dal.dao.Dao;
 import de.interactive_instruments.etf.dal.dao.DataStorage;
 import de.interactive_instruments.etf.dal.dao.StreamWriteDao;
 import de.interactive_instruments.etf.dal.dto.capabilities.ComponentDto;
@@ -51,7 +48,6 @@ import de.interactive_instruments.etf.dal.dto.test.ExecutableTestSuiteDto;
 import de.interactive_instruments.etf.dal.dto.translation.TranslationTemplateBundleDto;
 import de.interactive_instruments.etf.model.EidFactory;
 import de.interactive_instruments.etf.model.ParameterSet;
-import de.interactive_instruments.etf.sel.mapping.EtsMapper;
 import de.interactive_instruments.exceptions.ExcUtils;
 import de.interactive_instruments.exceptions.ObjectWithIdNotFoundException;
 import de.interactive_instruments.exceptions.StorageException;
@@ -63,43 +59,92 @@ class SuiFileLoader extends AbstractItemFileLoader<ExecutableTestSuiteDto> {
 
     private final static Logger logger = LoggerFactory.getLogger(SuiFileLoader.class);
     private final StreamWriteDao<ExecutableTestSuiteDto> writeDao;
-    private final Dao<TranslationTemplateBundleDto> translationTemplateBundleDao;
-    private final Dao<TagDto> tagDao;
-    private WsdlProject project;
+    private final SuiDtoLookup lookup;
+    private final SuiBulkWriter bulkWriter;
+    private final SuiProjectTemplateCache projectTemplateCache;
+    private final SuiLoadPipeline pipeline;
+    private final SuiLoadRegistry loadRegistry;
+    private SuiLoadPipeline.Work work;
+    private final AtomicBoolean building = new AtomicBoolean();
+    private SuiProjectHeader header;
+    private String hash;
 
     SuiFileLoader(final ItemFileLoaderResultListener<ExecutableTestSuiteDto> loaderResultListener,
             final Path path,
-            final DataStorage dataStorageCallback) {
+            final DataStorage dataStorageCallback,
+            final SuiProjectTemplateCache projectTemplateCache,
+            final SuiLoadPipeline pipeline,
+            final SuiLoadRegistry loadRegistry,
+            final SuiDtoLookup lookup,
+            final SuiBulkWriter bulkWriter) {
         super(loaderResultListener, 400, path.toFile());
         this.writeDao = (StreamWriteDao<ExecutableTestSuiteDto>) dataStorageCallback.getDao(ExecutableTestSuiteDto.class);
-        this.translationTemplateBundleDao = dataStorageCallback.getDao(TranslationTemplateBundleDto.class);
-        this.tagDao = dataStorageCallback.getDao(TagDto.class);
+        this.projectTemplateCache = projectTemplateCache;
+        this.pipeline = pipeline;
+        this.loadRegistry = loadRegistry;
+        this.lookup = lookup;
+        this.bulkWriter = bulkWriter;
+    }
+
+    /**
+     * Start loading the file in the background, before the loader is prepared
+     */
+    SuiFileLoader prefetch() {
+        if (this.work == null) {
+            if (building.compareAndSet(false, true)) {
+                bulkWriter.expect();
+            }
+            this.work = pipeline.submit(this.file);
+        }
+        return this;
+    }
+
+    /**
+     * Lets the bulk writer flush its queue after the last pending loader is done
+     */
+    private void done() {
+        if (building.compareAndSet(true, false)) {
+            bulkWriter.done();
+        }
     }
 
     @Override
     protected boolean doPrepare() {
         try {
-            this.project = (WsdlProject) ProjectFactoryRegistry.getProjectFactory(
-                    "wsdl").createNew(this.file.getPath());
-            final String translationTemplateId = project.getPropertyValue(SuiConstants.TRANSLATION_TEMPLATE_ID_PROPERTY);
+            final SuiLoadPipeline.Work prepared = prefetch().work.awaitPrepared();
+            this.header = prepared.getHeader();
+            this.hash = prepared.getHash();
+            if (header.isEncrypted()) {
+                logger.warn("Properties of encrypted project {} can not be read, dependencies are not resolved",
+                        this.file.getName());
+            }
+            final String translationTemplateId = header.getPropertyValue(SuiConstants.TRANSLATION_TEMPLATE_ID_PROPERTY);
             if (!SUtils.isNullOrEmpty(translationTemplateId)) {
                 dependsOn(EidFactory.getDefault().createUUID(translationTemplateId));
             }
-            final String tagIds = project.getPropertyValue(SuiConstants.TAG_IDS_PROPERTY);
+            final String tagIds = header.getPropertyValue(SuiConstants.TAG_IDS_PROPERTY);
             if (!SUtils.isNullOrEmpty(tagIds)) {
                 final String[] t = tagIds.split(",");
                 for (final String s : t) {
                     dependsOn(EidFactory.getDefault().createUUID(s.trim()));
                 }
             }
-            final String dependencyIds = project.getPropertyValue(SuiConstants.DEPENDENCY_IDS_PROPERTY);
+            final String dependencyIds = header.getPropertyValue(SuiConstants.DEPENDENCY_IDS_PROPERTY);
             if (!SUtils.isNullOrEmpty(dependencyIds)) {
                 final String[] deps = dependencyIds.split(",");
                 for (final String d : deps) {
                     dependsOn(EidFactory.getDefault().createUUID(d.trim()));
                 }
             }
-        } catch (XmlException | IOException | SoapUIException e) {
+        } catch (final ExecutionException e) {
+            logger.debug("Could not read project file {}", this.file.getName(), e.getCause());
+            this.work = null;
+            done();
+            return false;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.work = null;
+            done();
             return false;
         }
         return true;
@@ -108,11 +153,53 @@ class SuiFileLoader extends AbstractItemFileLoader<ExecutableTestSuiteDto> {
     @Override
     protected ExecutableTestSuiteDto doBuild() {
         try {
-            final ExecutableTestSuiteDto executableTestSuiteDto = new EtsMapper(project).toTestTaskResult();
+            return build();
+        } finally {
+            done();
+        }
+    }
+
+    private ExecutableTestSuiteDto build() {
+        final List<ExecutableTestSuiteDto> dependencies = new ArrayList<>();
+        final String dependencyIds = header.getPropertyValue(SuiConstants.DEPENDENCY_IDS_PROPERTY);
+        if (!SUtils.isNullOrEmpty(dependencyIds)) {
+            final String[] deps = dependencyIds.split(",");
+            for (final String d : deps) {
+                dependencies.add((ExecutableTestSuiteDto) getDependency(EidFactory.getDefault().createUUID(d.trim())));
+            }
+        }
+        final ExecutableTestSuiteDto unchanged = loadRegistry.getUnchanged(this.file, hash, dependencies);
+        if (unchanged != null) {
+            if (this.work != null) {
+                this.work.cancel();
+                this.work = null;
+            }
+            logger.info("Content of {} has not changed, keeping Executable Test Suite {}", this.file.getName(),
+                    unchanged.getDescriptiveLabel());
+            return unchanged;
+        }
+        // the Executable Test Suite of the previous load is replaced, also if the build fails
+        delete(loadRegistry.takeStale(this.file));
+
+        final SuiLoadPipeline.Work parsed;
+        try {
+            parsed = prefetch().work.awaitParsed();
+        } catch (final ExecutionException e) {
+            logger.error("Error creating Executable Test Suite from file {}", this.file.toPath(), e.getCause());
+            return null;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            this.work = null;
+        }
+        final long start = System.currentTimeMillis();
+        try {
+            final ExecutableTestSuiteDto executableTestSuiteDto = parsed.getExecutableTestSuite();
             executableTestSuiteDto.setTestDriver(new ComponentDto(SuiTestDriver.COMPONENT_INFO));
 
             final ParameterSet parameters = new ParameterSet();
-            final String ignoreProperty = project.getPropertyValue("etf.ignore.properties");
+            final String ignoreProperty = header.getPropertyValue("etf.ignore.properties");
             final Set<String> ignoreParameteres;
             if (!SUtils.isNullOrEmpty(ignoreProperty)) {
                 ignoreParameteres = new HashSet<>(EtfConstants.ETF_PROPERTY_KEYS);
@@ -137,11 +224,13 @@ class SuiFileLoader extends AbstractItemFileLoader<ExecutableTestSuiteDto> {
                 executableTestSuiteDto.setRemoteResource(URI.create("http://none"));
             }
 
-            final String translationTemplateId = project.getPropertyValue(SuiConstants.TRANSLATION_TEMPLATE_ID_PROPERTY);
-            if (!SUtils.isNullOrEmpty(translationTemplateId)) {
+            final String translationTemplateId = header.getPropertyValue(SuiConstants.TRANSLATION_TEMPLATE_ID_PROPERTY);
+            // the bundle is overwritten if the primary key property is set
+            if (!SUtils.isNullOrEmpty(translationTemplateId)
+                    && !header.getProperties().containsKey(ETF_TRANSLATION_TEMPLATE_BUNDLE_ID_PK)) {
                 try {
-                    final TranslationTemplateBundleDto translationTemplateBundleDto = translationTemplateBundleDao.getById(
-                            EidFactory.getDefault().createUUID(translationTemplateId)).getDto();
+                    final TranslationTemplateBundleDto translationTemplateBundleDto = lookup.getTranslationTemplateBundle(
+                            EidFactory.getDefault().createUUID(translationTemplateId));
                     executableTestSuiteDto.setTranslationTemplateBundle(translationTemplateBundleDto);
                 } catch (ObjectWithIdNotFoundException e) {
                     logger.error(LogUtils.FATAL_MESSAGE,
@@ -150,13 +239,12 @@ class SuiFileLoader extends AbstractItemFileLoader<ExecutableTestSuiteDto> {
                 }
             }
 
-            final String tagIds = project.getPropertyValue(SuiConstants.TAG_IDS_PROPERTY);
+            final String tagIds = header.getPropertyValue(SuiConstants.TAG_IDS_PROPERTY);
             if (!SUtils.isNullOrEmpty(tagIds)) {
                 try {
                     final String[] t = tagIds.split(",");
                     for (final String s : t) {
-                        final TagDto tagDto = tagDao.getById(
-                                EidFactory.getDefault().createUUID(s.trim())).getDto();
+                        final TagDto tagDto = lookup.getTag(EidFactory.getDefault().createUUID(s.trim()));
                         executableTestSuiteDto.addTag(tagDto);
                     }
                 } catch (ObjectWithIdNotFoundException e) {
@@ -165,32 +253,31 @@ class SuiFileLoader extends AbstractItemFileLoader<ExecutableTestSuiteDto> {
                 }
             }
 
-            project.getPropertyList().stream().filter(
-                    property -> !"serviceEndpoint".equals(property.getName())
-                            && !SuiConstants.TRANSLATION_TEMPLATE_ID_PROPERTY.equals(property.getName())
-                            && !SuiConstants.TAG_IDS_PROPERTY.equals(property.getName())
-                            && !ignoreParameteres.contains(property.getName()))
-                    .forEach(property -> parameters.addParameter(property.getName(), property.getValue()));
+            header.getProperties().entrySet().stream().filter(
+                    property -> !"serviceEndpoint".equals(property.getKey())
+                            && !SuiConstants.TRANSLATION_TEMPLATE_ID_PROPERTY.equals(property.getKey())
+                            && !SuiConstants.TAG_IDS_PROPERTY.equals(property.getKey())
+                            && !ignoreParameteres.contains(property.getKey()))
+                    .forEach(property -> parameters.addParameter(property.getKey(), property.getValue()));
             executableTestSuiteDto.setParameters(parameters);
-            if (project.hasProperty(ETF_TRANSLATION_TEMPLATE_BUNDLE_ID_PK)) {
-                final String id = project.getPropertyValue(ETF_TRANSLATION_TEMPLATE_BUNDLE_ID_PK);
+            if (header.getProperties().containsKey(ETF_TRANSLATION_TEMPLATE_BUNDLE_ID_PK)) {
+                final String id = header.getPropertyValue(ETF_TRANSLATION_TEMPLATE_BUNDLE_ID_PK);
                 executableTestSuiteDto.setTranslationTemplateBundle(
-                        translationTemplateBundleDao.getById(EidFactory.getDefault().createAndPreserveStr(id)).getDto());
+                        lookup.getTranslationTemplateBundle(EidFactory.getDefault().createAndPreserveStr(id)));
             }
 
-            final String dependencyIds = project.getPropertyValue(SuiConstants.DEPENDENCY_IDS_PROPERTY);
-            if (!SUtils.isNullOrEmpty(dependencyIds)) {
-                final String[] deps = dependencyIds.split(",");
-                for (final String d : deps) {
-                    executableTestSuiteDto.addDependency(
-                            (ExecutableTestSuiteDto) getDependency(EidFactory.getDefault().createUUID(d.trim())));
-                }
+            for (final ExecutableTestSuiteDto dependency : dependencies) {
+                executableTestSuiteDto.addDependency(dependency);
             }
 
-            // release resources
-            project.release();
+            projectTemplateCache.put(executableTestSuiteDto.getId(), parsed.getTemplate());
 
-            writeDao.add(executableTestSuiteDto);
+            bulkWriter.add(executableTestSuiteDto);
+            loadRegistry.put(this.file, hash, executableTestSuiteDto, dependencies);
+            logger.info("Loaded Executable Test Suite {} from {} in {} ms (hash and header {} ms, {} {} ms)",
+                    executableTestSuiteDto.getDescriptiveLabel(), this.file.getName(),
+                    System.currentTimeMillis() - start, parsed.getPrepareMillis(),
+                    parsed.isCached() ? "cache" : "parse", parsed.getParseMillis());
             return executableTestSuiteDto;
         } catch (StorageException | ObjectWithIdNotFoundException e) {
             logger.error("Error creating Executable Test Suite from file {}", this.file.toPath(), e);
@@ -200,9 +287,32 @@ class SuiFileLoader extends AbstractItemFileLoader<ExecutableTestSuiteDto> {
 
     @Override
     protected void doRelease() {
+        if (this.work != null) {
+            this.work.cancel();
+            this.work = null;
+        }
+        done();
         if (getResult() != null) {
+            delete(loadRegistry.release(this.file, getResult(), dependency -> {
+                try {
+                    return writeDao.exists(dependency.getId());
+                } catch (final Exception e) {
+                    ExcUtils.suppress(e);
+                    return false;
+                }
+            }));
+        }
+    }
+
+    private void delete(final List<ExecutableTestSuiteDto> executableTestSuites) {
+        for (final ExecutableTestSuiteDto executableTestSuite : executableTestSuites) {
+            projectTemplateCache.evict(executableTestSuite.getId());
+            if (bulkWriter.discard(executableTestSuite)) {
+                // not written yet
+                continue;
+            }
             try {
-                writeDao.delete(getResult().getId());
+                writeDao.delete(executableTestSuite.getId());
             } catch (StorageException | ObjectWithIdNotFoundException e) {
                 ExcUtils.suppress(e);
             }
@@ -22,6 +22,7 @@ package de.interactive_instruments.etf.testdriver.sui;
 
 import static de.interactive_instruments.etf.sel.mapping.Types.TEST_ITEM_TYPES;
 
+import java.io.File;
 import java.nio.file.Path;
 import java.util.Collections;
 
@@ -29,6 +30,7 @@ import de.interactive_instruments.etf.EtfConstants;
 import de.interactive_instruments.etf.component.loaders.AbstractItemFileLoaderFactory;
 import de.interactive_instruments.etf.component.loaders.LoadingContext;
 import de.interactive_instruments.etf.dal.dao.DataStorage;
+import de.interactive_instruments.etf.dal.dao.StreamWriteDao;
 import de.interactive_instruments.etf.dal.dao.WriteDao;
 import de.interactive_instruments.etf.dal.dto.test.ExecutableTestSuiteDto;
 import de.interactive_instruments.etf.dal.dto.test.TestItemTypeDto;
@@ -49,11 +51,17 @@ class SuiFileLoaderFactory extends AbstractItemFileLoaderFactory<ExecutableTestS
 
     private final ConfigProperties configProperties;
     private final DataStorage dataStorageCallback;
+    private final SuiProjectTemplateCache projectTemplateCache;
+    private SuiLoadPipeline pipeline;
+    private final SuiLoadRegistry loadRegistry = new SuiLoadRegistry();
+    private SuiDtoLookup lookup;
+    private SuiBulkWriter bulkWriter;
     private boolean initialized;
 
-    SuiFileLoaderFactory(final DataStorage dataStorageCallback) {
+    SuiFileLoaderFactory(final DataStorage dataStorageCallback, final SuiProjectTemplateCache projectTemplateCache) {
         this.configProperties = new ConfigProperties(EtfConstants.ETF_PROJECTS_DIR);
         this.dataStorageCallback = dataStorageCallback;
+        this.projectTemplateCache = projectTemplateCache;
     }
 
     @Override
@@ -64,6 +72,15 @@ class SuiFileLoaderFactory extends AbstractItemFileLoaderFactory<ExecutableTestS
         if (this.loadingContext == null) {
             throw new InitializationException("LoadingContext not set");
         }
+        final File cacheDir = SuiCacheDir.of(
+                this.configProperties.getProperty(SuiConstants.ETS_CACHE_DIR_CONFIG), "ets");
+        this.lookup = new SuiDtoLookup(dataStorageCallback);
+        this.bulkWriter = new SuiBulkWriter(
+                (StreamWriteDao<ExecutableTestSuiteDto>) dataStorageCallback.getDao(ExecutableTestSuiteDto.class),
+                Integer.parseInt(this.configProperties.getPropertyOrDefault(SuiConstants.LOADER_BATCH_SIZE_CONFIG, "50")));
+        this.pipeline = new SuiLoadPipeline(Integer.parseInt(this.configProperties.getPropertyOrDefault(
+                SuiConstants.LOADER_WORKERS_CONFIG, String.valueOf(Runtime.getRuntime().availableProcessors()))),
+                new SuiEtsCache(cacheDir), lookup);
 
         this.loadingContext.getItemFileObserverRegistry().register(
                 this.configProperties.getPropertyAsFile(EtfConstants.ETF_PROJECTS_DIR).toPath(),
@@ -85,6 +102,7 @@ class SuiFileLoaderFactory extends AbstractItemFileLoaderFactory<ExecutableTestS
             throw new InitializationException(e);
         }
 
+        this.loadRegistry.setActive(true);
         this.initialized = true;
     }
 
@@ -111,10 +129,36 @@ class SuiFileLoaderFactory extends AbstractItemFileLoaderFactory<ExecutableTestS
     @Override
     public void release() {
         this.initialized = false;
+        this.loadRegistry.setActive(false);
+        this.projectTemplateCache.clear();
+        if (this.pipeline != null) {
+            this.pipeline.release();
+        }
+        if (this.bulkWriter != null) {
+            this.bulkWriter.release();
+        }
         this.loadingContext.getItemFileObserverRegistry().deregister(
                 Collections.singletonList(this));
     }
 
+    /**
+     * @return number of loaded Executable Test Suites
+     */
+    int getLoadedCount() {
+        return this.initialized ? this.getItems().size() : 0;
+    }
+
+    /**
+     * @return duration of the last load of project files in milliseconds or -1 if nothing has been loaded yet
+     */
+    long getLastLoadMillis() {
+        return this.pipeline != null ? this.pipeline.getLastBatchMillis() : -1;
+    }
+
+    SuiEtsCache getEtsCache() {
+        return this.pipeline != null ? this.pipeline.getEtsCache() : null;
+    }
+
     @Override
     public boolean couldHandle(final Path path) {
         return path.toString().endsWith(SuiConstants.PROJECT_SUFFIX);
@@ -122,6 +166,8 @@ class SuiFileLoaderFactory extends AbstractItemFileLoaderFactory<ExecutableTestS
 
     @Override
     public FileChangeListener load(final Path path) {
-        return new SuiFileLoader(this, path, dataStorageCallback).setItemRegistry(this.getItemRegistry());
+        return new SuiFileLoader(this, path, dataStorageCallback, projectTemplateCache, pipeline,
+                loadRegistry, lookup, bulkWriter)
+                .prefetch().setItemRegistry(this.getItemRegistry());
     }
 }
@@ -0,0 +1,266 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.eviware.soapui.SoapUI;
+import com.eviware.soapui.model.ModelItem;
+import com.eviware.soapui.model.project.Project;
+import com.eviware.soapui.model.support.ModelSupport;
+import com.eviware.soapui.support.scripting.SoapUIScriptEngine;
+import com.eviware.soapui.support.scripting.SoapUIScriptEngineFactory;
+import com.eviware.soapui.support.scripting.SoapUIScriptEngineRegistry;
+
+import org.codehaus.groovy.runtime.InvokerHelper;
+
+import groovy.lang.Binding;
+import groovy.lang.GroovyClassLoader;
+import groovy.lang.GroovyCodeSource;
+import groovy.lang.Script;
+
+/**
+ * Compiled classes of the Groovy scripts of the test tasks, shared by the test tasks of one project template.
+ *
+ * SoapUI creates a new script engine for each script of a project instance, which parses the script and generates
+ * a new class. The engines registered by {@link #install()} look up the compiled class by the SHA-256 hash of the
+ * script source in the scope of the project instead and only create a new script instance with their own binding.
+ * A test task opens the scope of its project with {@link #open}. Projects that are created from the same
+ * {@link SuiProjectTemplate} share one scope, which is evicted when the template is released. Scripts must therefore
+ * not rely on static state between the test tasks of an Executable Test Suite. Scripts of projects without a scope
+ * are compiled for each engine, as by SoapUI.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class SuiGroovyScriptCache {
+
+    private final ConcurrentMap<Object, Scope> scopes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Project, Scope> projects = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong compileNanos = new AtomicLong();
+    private final Factory factory = new Factory();
+    private SoapUIScriptEngineFactory replaced;
+
+    private SuiGroovyScriptCache() {}
+
+    /**
+     * Replace the Groovy script engine of SoapUI with an engine that uses the cache, the SoapUI core must already be
+     * set
+     *
+     * @return the cache
+     */
+    static SuiGroovyScriptCache install() {
+        final SuiGroovyScriptCache cache = new SuiGroovyScriptCache();
+        cache.replaced = SoapUIScriptEngineRegistry.getFactory(SoapUIScriptEngineRegistry.GroovyScriptEngineFactory.ID);
+        SoapUIScriptEngineRegistry.registerScriptEngine(SoapUIScriptEngineRegistry.GroovyScriptEngineFactory.ID,
+                cache.factory);
+        return cache;
+    }
+
+    private final class Factory extends SoapUIScriptEngineRegistry.GroovyScriptEngineFactory {
+        @Override
+        public SoapUIScriptEngine createScriptEngine(final ModelItem modelItem) {
+            return new Engine(modelItem);
+        }
+    }
+
+    /**
+     * The compiled classes of the projects of one owner
+     */
+    private final static class Scope {
+        private final GroovyClassLoader classLoader = new GroovyClassLoader(
+                SoapUI.getSoapUICore().getExtensionClassLoader());
+        private final ConcurrentMap<String, Class<? extends Script>> classes = new ConcurrentHashMap<>();
+
+        private void clear() {
+            classes.clear();
+            classLoader.clearCache();
+        }
+    }
+
+    /**
+     * Use the compiled classes of the owner for the scripts of a project
+     *
+     * @param project
+     *            the project of a test task
+     * @param owner
+     *            the project template the project has been created from, see {@link SuiProjectTemplate#getScope()},
+     *            or the project itself
+     */
+    void open(final Project project, final Object owner) {
+        projects.put(project, scopes.computeIfAbsent(owner, o -> new Scope()));
+    }
+
+    void close(final Project project) {
+        projects.remove(project);
+        evict(project);
+    }
+
+    /**
+     * Drop the compiled classes of an owner
+     *
+     * @param owner
+     *            the owner passed to {@link #open}
+     */
+    void evict(final Object owner) {
+        final Scope scope = scopes.remove(owner);
+        if (scope != null) {
+            scope.clear();
+        }
+    }
+
+    /**
+     * Get the compiled class of a script
+     *
+     * @param project
+     *            the project of the script
+     * @param source
+     *            the script source
+     * @return the compiled class
+     */
+    Class<? extends Script> compile(final Project project, final String source) {
+        final String hash = SuiFileHash.toHex(SuiFileHash.newDigest().digest(
+                source.getBytes(StandardCharsets.UTF_8)));
+        final Scope scope = project != null ? projects.get(project) : null;
+        if (scope != null) {
+            final Class<? extends Script> cached = scope.classes.get(hash);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+        misses.incrementAndGet();
+        final long start = System.nanoTime();
+        final GroovyClassLoader classLoader = scope != null ? scope.classLoader
+                : new GroovyClassLoader(SoapUI.getSoapUICore().getExtensionClassLoader());
+        final Class<? extends Script> scriptClass = classLoader.parseClass(new GroovyCodeSource(source,
+                "Script" + hash.substring(0, 16) + ".groovy", "/groovy/script"), false).asSubclass(Script.class);
+        compileNanos.addAndGet(System.nanoTime() - start);
+        if (scope == null) {
+            return scriptClass;
+        }
+        final Class<? extends Script> raced = scope.classes.putIfAbsent(hash, scriptClass);
+        return raced != null ? raced : scriptClass;
+    }
+
+    private final class Engine implements SoapUIScriptEngine {
+        private final ModelItem modelItem;
+        private Binding binding = new Binding();
+        private String source;
+        private Class<? extends Script> scriptClass;
+        private Script script;
+
+        private Engine(final ModelItem modelItem) {
+            this.modelItem = modelItem;
+        }
+
+        @Override
+        public synchronized Object run() throws Exception {
+            if (source == null || source.trim().isEmpty()) {
+                return null;
+            }
+            if (script == null) {
+                compile();
+                script = InvokerHelper.createScript(scriptClass, binding);
+            }
+            return script.run();
+        }
+
+        @Override
+        public synchronized void setScript(final String scriptText) {
+            if (scriptText != null && scriptText.equals(source)) {
+                return;
+            }
+            source = scriptText;
+            scriptClass = null;
+            script = null;
+        }
+
+        @Override
+        public synchronized void compile() throws Exception {
+            if (scriptClass == null && source != null) {
+                scriptClass = SuiGroovyScriptCache.this.compile(
+                        modelItem != null ? ModelSupport.getModelItemProject(modelItem) : null, source);
+            }
+        }
+
+        @Override
+        public synchronized void setVariable(final String name, final Object value) {
+            binding.setVariable(name, value);
+        }
+
+        @Override
+        public synchronized void clearVariables() {
+            binding.getVariables().clear();
+        }
+
+        @Override
+        public synchronized void release() {
+            script = null;
+            scriptClass = null;
+            binding = new Binding();
+        }
+    }
+
+    /**
+     * Drop all compiled classes
+     */
+    void clear() {
+        for (final Object owner : scopes.keySet()) {
+            evict(owner);
+        }
+    }
+
+    /**
+     * Drop all compiled classes and restore the replaced script engine factory
+     */
+    void release() {
+        clear();
+        projects.clear();
+        if (SoapUIScriptEngineRegistry.getFactory(SoapUIScriptEngineRegistry.GroovyScriptEngineFactory.ID) == factory) {
+            SoapUIScriptEngineRegistry.registerScriptEngine(SoapUIScriptEngineRegistry.GroovyScriptEngineFactory.ID,
+                    replaced != null ? replaced : new SoapUIScriptEngineRegistry.GroovyScriptEngineFactory());
+        }
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    long getCompileMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(compileNanos.get());
+    }
+
+    @Override
+    public String toString() {
+        return "Groovy scripts: " + hits.get() + " cache hits, " + misses.get() + " compiled in "
+                + getCompileMillis() + "ms";
+    }
+}
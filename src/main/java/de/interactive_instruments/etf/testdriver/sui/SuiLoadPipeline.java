@@ -0,0 +1,236 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.stream.XMLStreamException;
+
+import com.eviware.soapui.impl.wsdl.WsdlProject;
+import com.eviware.soapui.model.project.ProjectFactoryRegistry;
+import com.eviware.soapui.support.SoapUIException;
+
+import org.apache.xmlbeans.XmlException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.interactive_instruments.etf.dal.dto.test.ExecutableTestSuiteDto;
+import de.interactive_instruments.etf.sel.mapping.EtsMapper;
+
+/**
+ * Loads project files on a bounded worker pool ahead of the {@link SuiFileLoader}s.
+ *
+ * The work that does not depend on other items is done concurrently for all submitted files: hashing, scanning
+ * the header, parsing the project and mapping it to an Executable Test Suite. The loaders wait for these results,
+ * while the loading context still prepares and builds them in dependency order and resolves the dependencies.
+ *
+ * Unchanged project files are not parsed if their mapped Executable Test Suite is found in the {@link SuiEtsCache}.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class SuiLoadPipeline {
+
+    private final static Logger logger = LoggerFactory.getLogger(SuiLoadPipeline.class);
+    private final ExecutorService executor;
+    private final SuiEtsCache etsCache;
+    private final SuiDtoLookup lookup;
+    private final int workers;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicInteger loaded = new AtomicInteger();
+    private final AtomicLong cumulatedNanos = new AtomicLong();
+    private volatile long batchStart;
+    private volatile long lastBatchMillis = -1;
+
+    SuiLoadPipeline(final int workers, final SuiEtsCache etsCache, final SuiDtoLookup lookup) {
+        this.etsCache = etsCache;
+        this.lookup = lookup;
+        this.workers = Math.max(1, workers);
+        this.executor = SuiExecutors.newWorkerPool("loader", this.workers, false);
+    }
+
+    /**
+     * The loading results of one project file
+     */
+    final class Work {
+        private final File file;
+        private CompletableFuture<Work> prepared;
+        private CompletableFuture<Work> parsed;
+        private String hash;
+        private SuiProjectHeader header;
+        private ExecutableTestSuiteDto executableTestSuite;
+        private SuiProjectTemplate template;
+        private long prepareNanos;
+        private long parseNanos;
+
+        private Work(final File file) {
+            this.file = file;
+        }
+
+        private Work prepare() {
+            final long start = System.nanoTime();
+            try {
+                hash = SuiFileHash.of(file);
+                header = SuiProjectHeader.scan(file);
+            } catch (final IOException | XMLStreamException e) {
+                throw new CompletionException(e);
+            } finally {
+                prepareNanos = System.nanoTime() - start;
+            }
+            return this;
+        }
+
+        private Work parse() {
+            final long start = System.nanoTime();
+            executableTestSuite = etsCache.get(file, hash);
+            if (executableTestSuite != null) {
+                // the project template is parsed on first use
+                parseNanos = System.nanoTime() - start;
+                return this;
+            }
+            try {
+                final WsdlProject project = (WsdlProject) ProjectFactoryRegistry.getProjectFactory(
+                        "wsdl").createNew(file.getPath());
+                try {
+                    executableTestSuite = new EtsMapper(project).toTestTaskResult();
+                    etsCache.put(file, hash, executableTestSuite);
+                    // keep the parsed project for the test tasks, before releasing resources
+                    template = SuiProjectTemplate.of(file, hash, project);
+                } finally {
+                    project.release();
+                }
+            } catch (final XmlException | IOException | SoapUIException e) {
+                throw new CompletionException(e);
+            } finally {
+                parseNanos = System.nanoTime() - start;
+            }
+            return this;
+        }
+
+        /**
+         * Wait until the hash and the header are available
+         */
+        Work awaitPrepared() throws InterruptedException, ExecutionException {
+            return prepared.get();
+        }
+
+        /**
+         * Wait until the project has been parsed and mapped
+         */
+        Work awaitParsed() throws InterruptedException, ExecutionException {
+            return parsed.get();
+        }
+
+        /**
+         * @return true if the project has been taken from the cache and has not been parsed
+         */
+        boolean isCached() {
+            return template == null && executableTestSuite != null;
+        }
+
+        void cancel() {
+            parsed.cancel(false);
+        }
+
+        String getHash() {
+            return hash;
+        }
+
+        SuiProjectHeader getHeader() {
+            return header;
+        }
+
+        /**
+         * @return the mapped Executable Test Suite, without translation template bundle, tags, parameters and
+         *         dependencies
+         */
+        ExecutableTestSuiteDto getExecutableTestSuite() {
+            return executableTestSuite;
+        }
+
+        SuiProjectTemplate getTemplate() {
+            return template;
+        }
+
+        long getPrepareMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(prepareNanos);
+        }
+
+        long getParseMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(parseNanos);
+        }
+    }
+
+    /**
+     * Start loading a project file
+     *
+     * @param file
+     *            the project file
+     * @return the pending work
+     */
+    Work submit(final File file) {
+        if (pending.getAndIncrement() == 0) {
+            batchStart = System.nanoTime();
+            lookup.clear();
+            loaded.set(0);
+            cumulatedNanos.set(0);
+        }
+        final Work work = new Work(file);
+        work.prepared = CompletableFuture.supplyAsync(work::prepare, executor);
+        work.parsed = work.prepared.thenApplyAsync(Work::parse, executor);
+        work.parsed.whenComplete((w, e) -> done(work, e));
+        return work;
+    }
+
+    private void done(final Work work, final Throwable e) {
+        if (e == null) {
+            logger.debug("Parsed project file {} in {} ms (hash and header {} ms)", work.file.getName(),
+                    work.getParseMillis(), work.getPrepareMillis());
+        }
+        loaded.incrementAndGet();
+        cumulatedNanos.addAndGet(work.prepareNanos + work.parseNanos);
+        if (pending.decrementAndGet() == 0) {
+            lastBatchMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - batchStart);
+            logger.info("Parsed {} project files in {} ms with {} workers ({} ms cumulated)", loaded.get(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - batchStart), workers,
+                    TimeUnit.NANOSECONDS.toMillis(cumulatedNanos.get()));
+            logger.debug("Tags and Translation Template Bundles fetched so far: {}", lookup.getFetches());
+        }
+    }
+
+    /**
+     * @return duration of the last completed batch of project files or -1 if no batch has completed yet
+     */
+    long getLastBatchMillis() {
+        return lastBatchMillis;
+    }
+
+    SuiEtsCache getEtsCache() {
+        return etsCache;
+    }
+
+    void release() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,215 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import de.interactive_instruments.etf.dal.dto.test.ExecutableTestSuiteDto;
+
+/**
+ * The Executable Test Suites that have been built from the project files, with the content hash of the files.
+ *
+ * Deployment tools may touch project files without changing them, which causes the file observer to reload them.
+ * The registry allows a loader to hand over its Executable Test Suite to the loader of the next reload, if the
+ * content and the dependencies are unchanged, instead of deleting and adding it again.
+ *
+ * An Executable Test Suite that has been handed over is only kept if the next loader reuses it. Otherwise the next
+ * loader takes it with {@link #takeStale} and deletes it before it builds the new one. An Executable Test Suite that
+ * has been handed over is deleted immediately if one of its dependencies is deleted, as its loader will not be
+ * built again.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class SuiLoadRegistry {
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private volatile boolean active;
+
+    private final static class Entry {
+        private final String hash;
+        private final ExecutableTestSuiteDto executableTestSuite;
+        private final List<ExecutableTestSuiteDto> dependencies;
+        // handed over to the next loader
+        private boolean pending;
+        // a dependency has been deleted or replaced
+        private boolean dependencyReleased;
+
+        private Entry(final String hash, final ExecutableTestSuiteDto executableTestSuite,
+                final List<ExecutableTestSuiteDto> dependencies) {
+            this.hash = hash;
+            this.executableTestSuite = executableTestSuite;
+            this.dependencies = dependencies;
+        }
+
+        private boolean dependsOn(final ExecutableTestSuiteDto executableTestSuite) {
+            for (final ExecutableTestSuiteDto dependency : dependencies) {
+                if (dependency == executableTestSuite) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static String key(final File file) {
+        return file.getAbsolutePath();
+    }
+
+    synchronized void put(final File file, final String hash, final ExecutableTestSuiteDto executableTestSuite,
+            final List<ExecutableTestSuiteDto> dependencies) {
+        entries.put(key(file), new Entry(hash, executableTestSuite, dependencies));
+    }
+
+    /**
+     * Get the Executable Test Suite that has been handed over by the loader of the previous load
+     *
+     * @param file
+     *            the project file
+     * @param hash
+     *            the current content hash of the file
+     * @param dependencies
+     *            the currently resolved dependencies
+     * @return the registered Executable Test Suite or null if the file or one of the dependencies changed
+     */
+    synchronized ExecutableTestSuiteDto getUnchanged(final File file, final String hash,
+            final List<ExecutableTestSuiteDto> dependencies) {
+        final Entry entry = entries.get(key(file));
+        if (entry == null || !entry.pending || entry.dependencyReleased || !entry.hash.equals(hash)
+                || entry.dependencies.size() != dependencies.size()) {
+            return null;
+        }
+        for (int i = 0; i < dependencies.size(); i++) {
+            // dependencies are only unchanged if they have not been rebuilt
+            if (entry.dependencies.get(i) != dependencies.get(i)) {
+                return null;
+            }
+        }
+        entry.pending = false;
+        return entry.executableTestSuite;
+    }
+
+    /**
+     * Take the Executable Test Suite that has been handed over by the loader of the previous load, but that is not
+     * reused
+     *
+     * @param file
+     *            the project file
+     * @return the Executable Test Suites that must be deleted, including handed over Executable Test Suites that
+     *         depend on it
+     */
+    synchronized List<ExecutableTestSuiteDto> takeStale(final File file) {
+        final List<ExecutableTestSuiteDto> stale = new ArrayList<>();
+        final Entry entry = entries.get(key(file));
+        if (entry != null && entry.pending) {
+            remove(file, entry, stale);
+        }
+        return stale;
+    }
+
+    /**
+     * Called when a loader is released. Decides if the Executable Test Suite must be removed or if it is
+     * handed over to the loader of the next reload of the unchanged file.
+     *
+     * @param file
+     *            the project file
+     * @param executableTestSuite
+     *            the Executable Test Suite the loader has built
+     * @param available
+     *            checks if a dependency that has not been built by a loader of this registry still exists
+     * @return the Executable Test Suites that must be deleted, including handed over Executable Test Suites that
+     *         depend on it
+     */
+    synchronized List<ExecutableTestSuiteDto> release(final File file, final ExecutableTestSuiteDto executableTestSuite,
+            final Predicate<ExecutableTestSuiteDto> available) {
+        final List<ExecutableTestSuiteDto> released = new ArrayList<>();
+        final Entry entry = entries.get(key(file));
+        if (entry == null) {
+            released.add(executableTestSuite);
+            return released;
+        }
+        if (entry.executableTestSuite != executableTestSuite) {
+            // already replaced by the loader of a reload
+            return released;
+        }
+        if (active && !entry.dependencyReleased && file.isFile() && dependenciesAvailable(entry, available)) {
+            try {
+                if (entry.hash.equals(SuiFileHash.of(file))) {
+                    entry.pending = true;
+                    return released;
+                }
+            } catch (final IOException ignore) {
+                // removed below
+            }
+        }
+        remove(file, entry, released);
+        return released;
+    }
+
+    private boolean dependenciesAvailable(final Entry entry, final Predicate<ExecutableTestSuiteDto> available) {
+        for (final ExecutableTestSuiteDto dependency : entry.dependencies) {
+            if (!isRegistered(dependency) && !available.test(dependency)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isRegistered(final ExecutableTestSuiteDto executableTestSuite) {
+        for (final Entry entry : entries.values()) {
+            if (entry.executableTestSuite == executableTestSuite) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void remove(final File file, final Entry entry, final List<ExecutableTestSuiteDto> removed) {
+        entries.remove(key(file), entry);
+        removed.add(entry.executableTestSuite);
+        // handed over Executable Test Suites that depend on the removed one
+        for (final Map.Entry<String, Entry> dependent : new ArrayList<>(entries.entrySet())) {
+            if (dependent.getValue().dependsOn(entry.executableTestSuite)) {
+                if (dependent.getValue().pending) {
+                    remove(new File(dependent.getKey()), dependent.getValue(), removed);
+                } else {
+                    dependent.getValue().dependencyReleased = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Only retain Executable Test Suites of unchanged files while the loader factory is active
+     */
+    void setActive(final boolean active) {
+        this.active = active;
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+}
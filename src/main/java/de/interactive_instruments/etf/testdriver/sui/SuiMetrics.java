@@ -0,0 +1,168 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.*;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.micrometer.jmx.JmxConfig;
+import io.micrometer.jmx.JmxMeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Latency and size histograms of the test runs, exported through a Micrometer registry.
+ *
+ * The backend is selected with {@link SuiConstants#METRICS_BACKEND_CONFIG}: <code>none</code> records into a
+ * registry without backend, where all meters are no-ops, and <code>jmx</code> exports to the JMX domain
+ * <code>etf.sui</code>. Micrometer is bundled with the driver and loaded by the class loader of the driver, so the
+ * meters are only published in the registry of the driver: the global registry and the registries of the hosting
+ * application are not populated, JMX is the way to read the metrics from outside. The distributions are kept in HDR
+ * histograms, from which the percentiles are computed. Meters are looked up once per step type, so that recording a
+ * value does not allocate.
+ *
+ * The instance is shared by all test tasks and assertions and available through {@link #current()}.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class SuiMetrics {
+
+    private final static Logger logger = LoggerFactory.getLogger(SuiMetrics.class);
+    private final static double[] PERCENTILES = {0.5, 0.95, 0.99};
+    private static volatile SuiMetrics current = new SuiMetrics(new CompositeMeterRegistry(), false);
+
+    private final MeterRegistry registry;
+    private final boolean owned;
+    private final ConcurrentMap<Class<?>, Timer> stepTimers = new ConcurrentHashMap<>();
+    private final Timer suiteTimer;
+    private final Timer projectTimer;
+    private final Timer assertionTimer;
+    private final DistributionSummary requestSizes;
+    private final DistributionSummary responseSizes;
+
+    private SuiMetrics(final MeterRegistry registry, final boolean owned) {
+        this.registry = registry;
+        this.owned = owned;
+        this.suiteTimer = timer("etf.sui.suite.duration", "Duration of test suites");
+        this.projectTimer = timer("etf.sui.project.duration", "Duration of test runs");
+        this.assertionTimer = timer("etf.sui.assertion.duration", "Evaluation time of single pass XPath assertions");
+        this.requestSizes = size("etf.sui.request.size", "Size of request bodies");
+        this.responseSizes = size("etf.sui.response.size", "Size of response bodies");
+    }
+
+    private Timer timer(final String name, final String description) {
+        return Timer.builder(name).description(description).publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram().register(registry);
+    }
+
+    private DistributionSummary size(final String name, final String description) {
+        return DistributionSummary.builder(name).description(description).baseUnit("bytes")
+                .publishPercentiles(PERCENTILES).publishPercentileHistogram().register(registry);
+    }
+
+    /**
+     * Create the metrics for a backend and make them the current metrics
+     *
+     * @param backend
+     *            <code>none</code> or <code>jmx</code>
+     * @return the metrics
+     */
+    static SuiMetrics install(final String backend) {
+        final SuiMetrics metrics;
+        switch (backend.trim().toLowerCase()) {
+        case "jmx":
+            metrics = new SuiMetrics(new JmxMeterRegistry(new JmxConfig() {
+                @Override
+                public String get(final String key) {
+                    return null;
+                }
+
+                @Override
+                public String domain() {
+                    return "etf.sui";
+                }
+            }, Clock.SYSTEM), true);
+            break;
+        case "none":
+            metrics = new SuiMetrics(new CompositeMeterRegistry(), true);
+            break;
+        default:
+            logger.warn("Unknown metrics backend '{}', metrics are disabled", backend);
+            metrics = new SuiMetrics(new CompositeMeterRegistry(), true);
+        }
+        current = metrics;
+        return metrics;
+    }
+
+    static SuiMetrics current() {
+        return current;
+    }
+
+    MeterRegistry getRegistry() {
+        return registry;
+    }
+
+    void recordStep(final Class<?> stepType, final long millis) {
+        Timer timer = stepTimers.get(stepType);
+        if (timer == null) {
+            timer = stepTimers.computeIfAbsent(stepType, type -> Timer.builder("etf.sui.step.duration")
+                    .description("Duration of test steps").tag("type", type.getSimpleName())
+                    .publishPercentiles(PERCENTILES).publishPercentileHistogram().register(registry));
+        }
+        timer.record(millis, TimeUnit.MILLISECONDS);
+    }
+
+    void recordSuite(final long millis) {
+        suiteTimer.record(millis, TimeUnit.MILLISECONDS);
+    }
+
+    void recordProject(final long millis) {
+        projectTimer.record(millis, TimeUnit.MILLISECONDS);
+    }
+
+    void recordAssertion(final long nanos) {
+        assertionTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void recordRequestSize(final long bytes) {
+        requestSizes.record(bytes);
+    }
+
+    void recordResponseSize(final long bytes) {
+        responseSizes.record(bytes);
+    }
+
+    /**
+     * Close the registry, if it has been created for the metrics
+     */
+    void release() {
+        if (owned) {
+            registry.close();
+        }
+        if (current == this) {
+            current = new SuiMetrics(new CompositeMeterRegistry(), false);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Object input stream that only resolves allowed classes.
+ *
+ * Allowed are primitive types, common classes of the java.lang, java.util and java.time packages and classes in the
+ * passed packages or the passed classes. All other classes, including proxy classes, are rejected before they are instantiated.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class SuiObjectInputStream extends ObjectInputStream {
+
+    private final static Set<String> JAVA_CLASSES = new HashSet<>(Arrays.asList(
+            "java.lang.String", "java.lang.Boolean", "java.lang.Character", "java.lang.Number", "java.lang.Byte",
+            "java.lang.Short", "java.lang.Integer", "java.lang.Long", "java.lang.Float", "java.lang.Double",
+            "java.lang.Enum", "java.math.BigInteger", "java.math.BigDecimal", "java.net.URI",
+            "java.util.ArrayList", "java.util.LinkedList", "java.util.HashMap", "java.util.LinkedHashMap",
+            "java.util.TreeMap", "java.util.HashSet", "java.util.LinkedHashSet", "java.util.TreeSet",
+            "java.util.Arrays$ArrayList", "java.util.Date", "java.util.Locale", "java.util.UUID",
+            "java.util.Collections$EmptyList", "java.util.Collections$EmptyMap", "java.util.Collections$EmptySet",
+            "java.util.Collections$SingletonList", "java.util.Collections$SingletonMap",
+            "java.util.Collections$SingletonSet", "java.util.Collections$UnmodifiableCollection",
+            "java.util.Collections$UnmodifiableList", "java.util.Collections$UnmodifiableRandomAccessList",
+            "java.util.Collections$UnmodifiableMap", "java.util.Collections$UnmodifiableSet",
+            "java.util.Collections$UnmodifiableSortedMap", "java.util.Collections$UnmodifiableSortedSet",
+            "java.time.Ser"));
+
+    private final Collection<String> packages;
+
+    /**
+     * @param in
+     *            the stream to read from
+     * @param packages
+     *            names of classes and of packages, including their sub packages, whose classes can be read
+     */
+    SuiObjectInputStream(final InputStream in, final String... packages) throws IOException {
+        super(in);
+        this.packages = Arrays.asList(packages);
+    }
+
+    @Override
+    protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+        if (!isAllowed(desc.getName())) {
+            throw new InvalidClassException(desc.getName(), "Class not allowed");
+        }
+        return super.resolveClass(desc);
+    }
+
+    @Override
+    protected Class<?> resolveProxyClass(final String[] interfaces) throws IOException, ClassNotFoundException {
+        throw new InvalidClassException("Proxy classes not allowed");
+    }
+
+    private boolean isAllowed(final String name) {
+        if (name.startsWith("[")) {
+            // array: primitive component type or L<class name>;
+            final String component = name.replaceFirst("^\\[+", "");
+            return component.length() == 1
+                    || (component.startsWith("L") && component.endsWith(";")
+                            && isAllowed(component.substring(1, component.length() - 1)));
+        }
+        if (JAVA_CLASSES.contains(name)) {
+            return true;
+        }
+        for (final String p : packages) {
+            if (name.equals(p) || name.startsWith(p + ".")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
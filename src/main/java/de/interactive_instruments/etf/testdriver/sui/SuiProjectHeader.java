@@ -0,0 +1,162 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * The project level properties of a SoapUI project file, read without building the project.
+ *
+ * Only the <code>properties</code> element below the root element is evaluated, all other elements are skipped
+ * while streaming through the file.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class SuiProjectHeader {
+
+    private final static String SOAPUI_NS = "http://eviware.com/soapui/config";
+    private final static XMLInputFactory inputFactory = createInputFactory();
+
+    private final Map<String, String> properties;
+    private final boolean encrypted;
+
+    private SuiProjectHeader(final Map<String, String> properties, final boolean encrypted) {
+        this.properties = properties;
+        this.encrypted = encrypted;
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        final XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * Read the project properties
+     *
+     * @param file
+     *            the SoapUI project file
+     * @return the header
+     * @throws IOException
+     *             if the file can not be read
+     * @throws XMLStreamException
+     *             if the file is not a SoapUI project file
+     */
+    static SuiProjectHeader scan(final File file) throws IOException, XMLStreamException {
+        try (final InputStream in = Files.newInputStream(file.toPath())) {
+            final XMLStreamReader reader = inputFactory.createXMLStreamReader(in);
+            try {
+                return scan(reader);
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    private static SuiProjectHeader scan(final XMLStreamReader reader) throws XMLStreamException {
+        reader.nextTag();
+        if (!SOAPUI_NS.equals(reader.getNamespaceURI()) || !"soapui-project".equals(reader.getLocalName())) {
+            throw new XMLStreamException("Not a SoapUI project", reader.getLocation());
+        }
+        final Map<String, String> properties = new LinkedHashMap<>();
+        boolean encrypted = false;
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            final String name = reader.getLocalName();
+            if ("properties".equals(name)) {
+                readProperties(reader, properties);
+            } else {
+                if ("encryptedContent".equals(name)) {
+                    encrypted = true;
+                }
+                skipElement(reader);
+            }
+        }
+        return new SuiProjectHeader(Collections.unmodifiableMap(properties), encrypted);
+    }
+
+    private static void readProperties(final XMLStreamReader reader, final Map<String, String> properties)
+            throws XMLStreamException {
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            if (!"property".equals(reader.getLocalName())) {
+                skipElement(reader);
+                continue;
+            }
+            String name = null;
+            String value = null;
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                if ("name".equals(reader.getLocalName())) {
+                    name = reader.getElementText();
+                } else if ("value".equals(reader.getLocalName())) {
+                    value = reader.getElementText();
+                } else {
+                    skipElement(reader);
+                }
+            }
+            if (name != null) {
+                properties.put(name, value != null ? value : "");
+            }
+        }
+    }
+
+    private static void skipElement(final XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * @return the value of a project property or null if the property is not set
+     */
+    String getPropertyValue(final String name) {
+        return properties.get(name);
+    }
+
+    Map<String, String> getProperties() {
+        return properties;
+    }
+
+    /**
+     * @return true if the project content is encrypted and the properties could not be read
+     */
+    boolean isEncrypted() {
+        return encrypted;
+    }
+}
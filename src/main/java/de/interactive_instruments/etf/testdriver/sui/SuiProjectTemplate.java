@@ -0,0 +1,230 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import com.eviware.soapui.config.SoapuiProjectDocumentConfig;
+import com.eviware.soapui.impl.wsdl.WsdlInterface;
+import com.eviware.soapui.impl.wsdl.WsdlProject;
+import com.eviware.soapui.model.iface.Interface;
+
+import org.apache.xmlbeans.XmlException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An already parsed SoapUI project document, from which isolated project instances are created for test tasks.
+ *
+ * The template itself is never modified, each call to {@link #newProject()} works on its own copy of the document.
+ * SoapUI only builds projects from a file or a stream, so each project still parses the document. The template
+ * serializes the document once and saves the project tasks reading and hashing the file and serializing the
+ * document again, which takes longer than parsing it.
+ *
+ * SoapUI shares the compiled schema type systems of the interface definitions between all projects that reference
+ * the same definition URL, as long as one of them is open. The first call to {@link #newProject()} therefore pins
+ * the definitions with an additional project instance, which is kept until the template is released, so test tasks
+ * do not compile the schemas again.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class SuiProjectTemplate {
+
+    private final static Logger logger = LoggerFactory.getLogger(SuiProjectTemplate.class);
+    private final String hash;
+    private final long lastModified;
+    private final long length;
+    private final SoapuiProjectDocumentConfig document;
+    private final DefinitionPin pin;
+    private volatile byte[] serialized;
+
+    private SuiProjectTemplate(final File file, final String hash, final SoapuiProjectDocumentConfig document,
+            final DefinitionPin pin, final byte[] serialized) {
+        this.hash = hash;
+        this.lastModified = file.lastModified();
+        this.length = file.length();
+        this.document = document;
+        this.pin = pin;
+        this.serialized = serialized;
+    }
+
+    /**
+     * Project instance that keeps the compiled definitions of the template loaded, shared by refreshed templates
+     */
+    private final static class DefinitionPin {
+        private WsdlProject project;
+        private SuiDefinitionCache definitionCache;
+        private boolean released;
+
+        private synchronized void pin(final SuiProjectTemplate template) {
+            if (project != null || released) {
+                return;
+            }
+            project = template.createProject();
+            for (final Interface iface : project.getInterfaceList()) {
+                if (iface instanceof WsdlInterface) {
+                    try {
+                        ((WsdlInterface) iface).getWsdlContext().loadIfNecessary();
+                    } catch (final Exception e) {
+                        logger.warn("Could not load definition {}", ((WsdlInterface) iface).getDefinition(), e);
+                    }
+                }
+            }
+            if (definitionCache != null) {
+                definitionCache.update(project.getProjectDocument());
+            }
+        }
+
+        private synchronized void release() {
+            released = true;
+            if (project != null) {
+                project.release();
+                project = null;
+            }
+        }
+    }
+
+    /**
+     * Creates a template from a project that has just been loaded from the file
+     *
+     * @param file
+     *            the project file
+     * @param hash
+     *            content hash of the project file
+     * @param project
+     *            the loaded project, which must not have been modified yet
+     * @return the template or null if the project can not be used as template
+     */
+    static SuiProjectTemplate of(final File file, final String hash, final WsdlProject project) {
+        final SoapuiProjectDocumentConfig projectDocument = project.getProjectDocument();
+        if (projectDocument == null || projectDocument.getSoapuiProject() == null
+                || projectDocument.getSoapuiProject().getEncryptedContent() != null) {
+            // encrypted projects require the password on each load
+            return null;
+        }
+        return new SuiProjectTemplate(file, hash,
+                (SoapuiProjectDocumentConfig) projectDocument.copy(), new DefinitionPin(), null);
+    }
+
+    /**
+     * Parses a template from the project file
+     *
+     * @param file
+     *            the project file
+     * @return the template or null if the project can not be used as template
+     */
+    static SuiProjectTemplate parse(final File file) throws IOException, XmlException {
+        final String hash = SuiFileHash.of(file);
+        final SoapuiProjectDocumentConfig projectDocument = SoapuiProjectDocumentConfig.Factory.parse(file);
+        if (projectDocument.getSoapuiProject() == null
+                || projectDocument.getSoapuiProject().getEncryptedContent() != null) {
+            return null;
+        }
+        return new SuiProjectTemplate(file, hash, projectDocument, new DefinitionPin(), null);
+    }
+
+    /**
+     * Creates a new project instance that does not share any state with other instances created from this template.
+     *
+     * @return new project
+     */
+    WsdlProject newProject() {
+        pin.pin(this);
+        return createProject();
+    }
+
+    private WsdlProject createProject() {
+        return new WsdlProject(new ByteArrayInputStream(serialize()), null);
+    }
+
+    /**
+     * @return the document, serialized on first use after the cached definitions have been injected
+     */
+    private byte[] serialize() {
+        byte[] bytes = serialized;
+        if (bytes == null) {
+            synchronized (this) {
+                bytes = serialized;
+                if (bytes == null) {
+                    final ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+                    try {
+                        document.save(out);
+                    } catch (final IOException e) {
+                        // in-memory stream
+                        throw new IllegalStateException(e);
+                    }
+                    serialized = bytes = out.toByteArray();
+                }
+            }
+        }
+        return bytes;
+    }
+
+    String getHash() {
+        return hash;
+    }
+
+    /**
+     * Cheap check if the file has not been touched since the template has been created
+     *
+     * @param file
+     *            the project file
+     * @return true if modification time and size are unchanged
+     */
+    boolean isUnmodified(final File file) {
+        return file.lastModified() == lastModified && file.length() == length;
+    }
+
+    /**
+     * @return an object that identifies this template and the templates refreshed from it
+     */
+    Object getScope() {
+        return pin;
+    }
+
+    SuiProjectTemplate refresh(final File file) {
+        return new SuiProjectTemplate(file, hash, document, pin, serialized);
+    }
+
+    /**
+     * Inject cached definitions into the template and store the definitions once they have been loaded. Must be
+     * called before the template is used.
+     *
+     * @param definitionCache
+     *            the disk cache of the definitions
+     */
+    void useDefinitionCache(final SuiDefinitionCache definitionCache) {
+        definitionCache.update(document);
+        synchronized (pin) {
+            pin.definitionCache = definitionCache;
+        }
+    }
+
+    /**
+     * Release the pinned definitions
+     */
+    void release() {
+        pin.release();
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.xmlbeans.XmlException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.interactive_instruments.etf.model.EID;
+
+/**
+ * Parsed project templates of the loaded Executable Test Suites.
+ *
+ * Templates are registered by the {@link SuiFileLoader} after an Executable Test Suite has been built and are
+ * looked up by the test tasks. An entry is only used as long as the content hash of the project file matches.
+ * Replaced and evicted templates release their pinned interface definitions and the compiled scripts of their
+ * projects.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class SuiProjectTemplateCache {
+
+    private final static Logger logger = LoggerFactory.getLogger(SuiProjectTemplateCache.class);
+    private final ConcurrentMap<EID, SuiProjectTemplate> templates = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile SuiDefinitionCache definitionCache;
+    private volatile SuiGroovyScriptCache scriptCache;
+
+    void setDefinitionCache(final SuiDefinitionCache definitionCache) {
+        this.definitionCache = definitionCache;
+    }
+
+    SuiDefinitionCache getDefinitionCache() {
+        return definitionCache;
+    }
+
+    void setScriptCache(final SuiGroovyScriptCache scriptCache) {
+        this.scriptCache = scriptCache;
+    }
+
+    private void release(final SuiProjectTemplate template) {
+        template.release();
+        final SuiGroovyScriptCache cache = scriptCache;
+        if (cache != null) {
+            cache.evict(template.getScope());
+        }
+    }
+
+    void put(final EID etsId, final SuiProjectTemplate template) {
+        if (template != null) {
+            final SuiDefinitionCache cache = definitionCache;
+            if (cache != null) {
+                template.useDefinitionCache(cache);
+            }
+            final SuiProjectTemplate replaced = templates.put(etsId, template);
+            if (replaced != null && replaced.getScope() != template.getScope()) {
+                release(replaced);
+            }
+        }
+    }
+
+    /**
+     * Get the template for an Executable Test Suite
+     *
+     * @param etsId
+     *            ID of the Executable Test Suite
+     * @param file
+     *            the project file of the Executable Test Suite
+     * @return the template or null if the project can not be used as template
+     */
+    SuiProjectTemplate get(final EID etsId, final File file) {
+        final SuiProjectTemplate cached = templates.get(etsId);
+        if (cached != null) {
+            if (cached.isUnmodified(file)) {
+                hits.incrementAndGet();
+                return cached;
+            }
+            try {
+                if (cached.getHash().equals(SuiFileHash.of(file))) {
+                    // only touched
+                    final SuiProjectTemplate refreshed = cached.refresh(file);
+                    templates.replace(etsId, cached, refreshed);
+                    hits.incrementAndGet();
+                    return refreshed;
+                }
+            } catch (final IOException e) {
+                logger.warn("Could not hash project file {}", file, e);
+                if (templates.remove(etsId, cached)) {
+                    release(cached);
+                }
+                return null;
+            }
+        }
+        misses.incrementAndGet();
+        try {
+            final SuiProjectTemplate parsed = SuiProjectTemplate.parse(file);
+            put(etsId, parsed);
+            return parsed;
+        } catch (final IOException | XmlException e) {
+            logger.warn("Could not parse project template from file {}", file, e);
+            return null;
+        }
+    }
+
+    void evict(final EID etsId) {
+        final SuiProjectTemplate evicted = templates.remove(etsId);
+        if (evicted != null) {
+            release(evicted);
+        }
+    }
+
+    void clear() {
+        for (final EID etsId : templates.keySet()) {
+            evict(etsId);
+        }
+    }
+
+    int size() {
+        return templates.size();
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+}
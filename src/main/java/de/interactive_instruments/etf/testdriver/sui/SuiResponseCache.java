@@ -0,0 +1,479 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.eviware.soapui.impl.wsdl.submit.RequestTransportRegistry;
+import com.eviware.soapui.impl.wsdl.submit.filters.AbstractRequestFilter;
+import com.eviware.soapui.impl.wsdl.submit.transports.http.BaseHttpRequestTransport;
+import com.eviware.soapui.impl.wsdl.support.http.HttpClientSupport;
+import com.eviware.soapui.impl.wsdl.teststeps.assertions.basic.GroovyScriptAssertion;
+import com.eviware.soapui.model.iface.Request;
+import com.eviware.soapui.model.iface.SubmitContext;
+import com.eviware.soapui.model.project.Project;
+import com.eviware.soapui.model.support.ModelSupport;
+import com.eviware.soapui.model.testsuite.Assertable;
+import com.eviware.soapui.model.testsuite.TestAssertion;
+
+import org.apache.http.*;
+import org.apache.http.client.HttpClient;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.AbstractHttpClient;
+import org.apache.http.message.BasicStatusLine;
+import org.apache.http.protocol.ExecutionContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Revalidating cache for responses to idempotent requests, shared by all test tasks.
+ *
+ * The cache is enabled for the test tasks of an Executable Test Suite with the project property
+ * {@link SuiConstants#HTTP_CACHE_PROPERTY}. Cached are responses to GET requests and to POST requests of known
+ * read-only OGC operations, if they carry an ETag or a Last-Modified header and are not marked with no-store.
+ * Entries are identified by method, target host, URI, content negotiation and authorization headers and a hash of
+ * the body.
+ *
+ * SoapUI sends each request itself, so a cached response can not be returned without a round trip. Instead the
+ * request is made conditional and a "304 Not Modified" response is replaced with the cached response, which saves
+ * the transfer and the server side processing of unchanged responses.
+ *
+ * Note that this changes what the test steps see: the driver adds If-None-Match and If-Modified-Since headers to
+ * the requests and the test steps get a "200 OK" with the cached headers and body instead of the "304 Not Modified"
+ * of the server. Requests of test steps with assertions on the HTTP status or on headers are therefore never made
+ * conditional, as well as requests that already carry conditional headers or a no-cache directive.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class SuiResponseCache {
+
+    private final static Logger logger = LoggerFactory.getLogger(SuiResponseCache.class);
+    // Internal marker header, set by the request filter and removed before the request is sent
+    private final static String MARKER_HEADER = "X-Etf-Sui-Cache";
+    private final static String KEY_ATTRIBUTE = "etf.sui.cache.key";
+    private final static String STATS_ATTRIBUTE = "etf.sui.cache.stats";
+    private final static String[] KEY_HEADERS = {"Accept", "Accept-Language", "Accept-Encoding", "Authorization"};
+    private final static Pattern ROOT_ELEMENT = Pattern.compile("<(?:[\\w.-]+:)?([A-Za-z][\\w.-]*)");
+    private final static Pattern IDEMPOTENT_POST_OPERATIONS = Pattern.compile(
+            "GetCapabilities|DescribeFeatureType|DescribeStoredQueries|ListStoredQueries|DescribeCoverage"
+                    + "|DescribeRecord|DescribeLayer");
+    private final static Pattern STATUS_OR_HEADER_ACCESS = Pattern.compile("(?i)header|status|httpResponse");
+
+    private final long maxSize;
+    private final long maxEntrySize;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long size;
+    private final ConcurrentMap<Project, Stats> statsByProject = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Stats> statsByToken = new ConcurrentHashMap<>();
+    private final AtomicLong tokens = new AtomicLong();
+    private final AtomicLong totalCacheable = new AtomicLong();
+    private final AtomicLong totalHits = new AtomicLong();
+    private final AbstractHttpClient httpClient;
+    private final CacheRequestFilter requestFilter = new CacheRequestFilter();
+
+    private final static class Entry {
+        private final Header[] headers;
+        private final byte[] body;
+        private final String etag;
+        private final String lastModified;
+
+        private Entry(final Header[] headers, final byte[] body, final String etag, final String lastModified) {
+            this.headers = headers;
+            this.body = body;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * Cache statistics of one test task
+     */
+    final static class Stats {
+        private final String token;
+        private final AtomicLong cacheable = new AtomicLong();
+        private final AtomicLong hits = new AtomicLong();
+
+        private Stats(final String token) {
+            this.token = token;
+        }
+
+        long getCacheable() {
+            return cacheable.get();
+        }
+
+        long getHits() {
+            return hits.get();
+        }
+
+        @Override
+        public String toString() {
+            final long c = cacheable.get();
+            return hits.get() + " of " + c + " cacheable requests answered from the cache ("
+                    + (c == 0 ? 0 : hits.get() * 100 / c) + "%)";
+        }
+    }
+
+    private SuiResponseCache(final AbstractHttpClient httpClient, final long maxSize) {
+        this.httpClient = httpClient;
+        this.maxSize = maxSize;
+        this.maxEntrySize = Math.max(1, maxSize / 16);
+    }
+
+    /**
+     * Install the cache in the shared SoapUI HTTP client and transport
+     *
+     * @param maxSizeBytes
+     *            maximum size of all cached bodies
+     * @return the cache or null if it could not be installed
+     */
+    static SuiResponseCache install(final long maxSizeBytes) {
+        final HttpClient httpClient = HttpClientSupport.getHttpClient();
+        if (!(httpClient instanceof AbstractHttpClient)) {
+            logger.warn("Response cache can not be installed in HTTP client {}", httpClient.getClass().getName());
+            return null;
+        }
+        final SuiResponseCache cache = new SuiResponseCache((AbstractHttpClient) httpClient, maxSizeBytes);
+        try {
+            RequestTransportRegistry.getTransport("http").addRequestFilter(cache.requestFilter);
+        } catch (final RequestTransportRegistry.MissingTransportException e) {
+            logger.warn("Response cache can not be installed", e);
+            return null;
+        }
+        return cache.intercept();
+    }
+
+    /**
+     * Install the cache in an HTTP client, without marking the requests of SoapUI test steps
+     *
+     * @param httpClient
+     *            the client, requests must be marked with {@link #mark(HttpRequest, Stats)}
+     * @param maxSizeBytes
+     *            maximum size of all cached bodies
+     * @return the cache
+     */
+    static SuiResponseCache install(final AbstractHttpClient httpClient, final long maxSizeBytes) {
+        return new SuiResponseCache(httpClient, maxSizeBytes).intercept();
+    }
+
+    private SuiResponseCache intercept() {
+        httpClient.addRequestInterceptor(new ConditionalRequestInterceptor());
+        httpClient.addResponseInterceptor(new CachingResponseInterceptor());
+        return this;
+    }
+
+    /**
+     * Enable the cache for a project, if it has been activated for the Executable Test Suite
+     *
+     * @param project
+     *            the project of a test task
+     * @return the statistics of the task or null if the cache is not activated
+     */
+    Stats open(final Project project) {
+        if (!"true".equalsIgnoreCase(project.getPropertyValue(SuiConstants.HTTP_CACHE_PROPERTY))) {
+            return null;
+        }
+        final Stats stats = new Stats(String.valueOf(tokens.incrementAndGet()));
+        statsByToken.put(stats.token, stats);
+        statsByProject.put(project, stats);
+        return stats;
+    }
+
+    void close(final Project project) {
+        final Stats stats = statsByProject.remove(project);
+        if (stats != null) {
+            statsByToken.remove(stats.token);
+        }
+    }
+
+    /**
+     * Marks the requests of projects for which the cache is enabled
+     */
+    private final class CacheRequestFilter extends AbstractRequestFilter {
+        @Override
+        public void filterRequest(final SubmitContext context, final Request request) {
+            if (statsByProject.isEmpty()) {
+                return;
+            }
+            final Stats stats = statsByProject.get(ModelSupport.getModelItemProject(request));
+            final Object method = context.getProperty(BaseHttpRequestTransport.HTTP_METHOD);
+            if (stats != null && method instanceof HttpRequest && !assertsOnStatusOrHeaders(request)) {
+                mark((HttpRequest) method, stats);
+            }
+        }
+    }
+
+    /**
+     * Mark a request as cacheable for the test task
+     */
+    static void mark(final HttpRequest request, final Stats stats) {
+        request.setHeader(MARKER_HEADER, stats.token);
+    }
+
+    /**
+     * @return true if the request belongs to a test step with assertions on the HTTP status code or, as far as this
+     *         can be detected in scripts, on the status line or the headers of the response
+     */
+    private static boolean assertsOnStatusOrHeaders(final Request request) {
+        if (!(request instanceof Assertable)) {
+            return false;
+        }
+        for (final TestAssertion assertion : ((Assertable) request).getAssertionList()) {
+            if (assertion.getClass().getSimpleName().contains("HttpStatusCode")) {
+                return true;
+            }
+            if (assertion instanceof GroovyScriptAssertion) {
+                final String script = ((GroovyScriptAssertion) assertion).getScriptText();
+                if (script != null && STATUS_OR_HEADER_ACCESS.matcher(script).find()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private final class ConditionalRequestInterceptor implements HttpRequestInterceptor {
+        @Override
+        public void process(final HttpRequest request, final HttpContext context) throws IOException {
+            context.removeAttribute(KEY_ATTRIBUTE);
+            final Header marker = request.getFirstHeader(MARKER_HEADER);
+            if (marker == null) {
+                return;
+            }
+            request.removeHeaders(MARKER_HEADER);
+            final Stats stats = statsByToken.get(marker.getValue());
+            if (stats == null || hasDirective(request, "no-store") || hasDirective(request, "no-cache")
+                    || request.containsHeader("If-None-Match") || request.containsHeader("If-Modified-Since")) {
+                return;
+            }
+            final String key = key(request, context);
+            if (key == null) {
+                return;
+            }
+            stats.cacheable.incrementAndGet();
+            totalCacheable.incrementAndGet();
+            context.setAttribute(KEY_ATTRIBUTE, key);
+            context.setAttribute(STATS_ATTRIBUTE, stats);
+            final Entry entry = get(key);
+            if (entry != null) {
+                if (entry.etag != null) {
+                    request.setHeader("If-None-Match", entry.etag);
+                }
+                if (entry.lastModified != null) {
+                    request.setHeader("If-Modified-Since", entry.lastModified);
+                }
+            }
+        }
+    }
+
+    private final class CachingResponseInterceptor implements HttpResponseInterceptor {
+        @Override
+        public void process(final HttpResponse response, final HttpContext context) throws IOException {
+            final String key = (String) context.getAttribute(KEY_ATTRIBUTE);
+            if (key == null) {
+                return;
+            }
+            context.removeAttribute(KEY_ATTRIBUTE);
+            final int status = response.getStatusLine().getStatusCode();
+            if (status == HttpStatus.SC_NOT_MODIFIED) {
+                final Entry entry = get(key);
+                if (entry != null) {
+                    ((Stats) context.getAttribute(STATS_ATTRIBUTE)).hits.incrementAndGet();
+                    totalHits.incrementAndGet();
+                    response.setStatusLine(new BasicStatusLine(response.getStatusLine().getProtocolVersion(),
+                            HttpStatus.SC_OK, "OK"));
+                    response.setHeaders(entry.headers);
+                    response.setEntity(entity(entry));
+                }
+            } else if (status == HttpStatus.SC_OK && response.getEntity() != null
+                    && !hasDirective(response, "no-store")) {
+                final Header etag = response.getFirstHeader("ETag");
+                final Header lastModified = response.getFirstHeader("Last-Modified");
+                final HttpEntity received = response.getEntity();
+                final long length = received.getContentLength();
+                if ((etag == null && lastModified == null) || length > maxEntrySize) {
+                    return;
+                }
+                // the length of chunked responses is unknown, stop buffering as soon as the limit is exceeded
+                final InputStream in = received.getContent();
+                final ByteArrayOutputStream buffer = new ByteArrayOutputStream(length > 0 ? (int) length : 8192);
+                final byte[] chunk = new byte[8192];
+                for (int n; buffer.size() <= maxEntrySize && (n = in.read(chunk)) != -1;) {
+                    buffer.write(chunk, 0, n);
+                }
+                if (buffer.size() > maxEntrySize) {
+                    // pass on the buffered part followed by the unread rest
+                    final BasicHttpEntity passOn = new BasicHttpEntity();
+                    passOn.setContent(new SequenceInputStream(new ByteArrayInputStream(buffer.toByteArray()), in));
+                    passOn.setContentLength(length);
+                    passOn.setChunked(received.isChunked());
+                    passOn.setContentType(received.getContentType());
+                    passOn.setContentEncoding(received.getContentEncoding());
+                    response.setEntity(passOn);
+                    return;
+                }
+                in.close();
+                final Entry entry = new Entry(response.getAllHeaders(), buffer.toByteArray(),
+                        etag != null ? etag.getValue() : null, lastModified != null ? lastModified.getValue() : null);
+                // the consumed entity is replaced with the buffered one
+                response.setEntity(entity(entry));
+                put(key, entry);
+            }
+        }
+    }
+
+    private static ByteArrayEntity entity(final Entry entry) {
+        final ByteArrayEntity entity = new ByteArrayEntity(entry.body);
+        for (final Header header : entry.headers) {
+            if ("Content-Type".equalsIgnoreCase(header.getName())) {
+                entity.setContentType(header);
+            } else if ("Content-Encoding".equalsIgnoreCase(header.getName())) {
+                entity.setContentEncoding(header);
+            }
+        }
+        return entity;
+    }
+
+    private static boolean hasDirective(final HttpMessage message, final String directive) {
+        for (final Header header : message.getHeaders("Cache-Control")) {
+            if (header.getValue().toLowerCase().contains(directive)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the key or null if the request is not idempotent or the target host is unknown
+     */
+    private static String key(final HttpRequest request, final HttpContext context) throws IOException {
+        final String method = request.getRequestLine().getMethod();
+        final MessageDigest digest = SuiFileHash.newDigest();
+        if ("POST".equals(method)) {
+            if (!(request instanceof HttpEntityEnclosingRequest)) {
+                return null;
+            }
+            final HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            if (entity == null || !entity.isRepeatable()) {
+                return null;
+            }
+            final byte[] body = EntityUtils.toByteArray(entity);
+            final Matcher rootElement = ROOT_ELEMENT.matcher(
+                    new String(body, 0, Math.min(body.length, 4096), StandardCharsets.UTF_8));
+            if (!rootElement.find() || !IDEMPOTENT_POST_OPERATIONS.matcher(rootElement.group(1)).matches()) {
+                return null;
+            }
+            digest.update(body);
+        } else if (!"GET".equals(method)) {
+            return null;
+        }
+        // the request line is rewritten to a relative URI, unless a proxy is used
+        final Object target = context.getAttribute(ExecutionContext.HTTP_TARGET_HOST);
+        final String uri = request.getRequestLine().getUri();
+        if (!(target instanceof HttpHost) && uri.startsWith("/")) {
+            return null;
+        }
+        final StringBuilder key = new StringBuilder(method).append(' ');
+        if (target instanceof HttpHost) {
+            key.append(((HttpHost) target).toURI());
+        }
+        key.append(uri);
+        for (final String name : KEY_HEADERS) {
+            for (final Header header : request.getHeaders(name)) {
+                key.append('\n').append(name).append(':').append(header.getValue());
+            }
+        }
+        digest.update(key.toString().getBytes(StandardCharsets.UTF_8));
+        return SuiFileHash.toHex(digest.digest());
+    }
+
+    private synchronized Entry get(final String key) {
+        return entries.get(key);
+    }
+
+    private synchronized void put(final String key, final Entry entry) {
+        final Entry replaced = entries.put(key, entry);
+        if (replaced != null) {
+            size -= replaced.body.length;
+        }
+        size += entry.body.length;
+        // evict least recently used entries
+        final Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (size > maxSize && it.hasNext()) {
+            final Entry eldest = it.next().getValue();
+            if (eldest == entry) {
+                continue;
+            }
+            size -= eldest.body.length;
+            it.remove();
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * @return cacheable requests of all test tasks
+     */
+    long getCacheable() {
+        return totalCacheable.get();
+    }
+
+    /**
+     * @return requests of all test tasks answered from the cache
+     */
+    long getHits() {
+        return totalHits.get();
+    }
+
+    synchronized long getSize() {
+        return size;
+    }
+
+    void release() {
+        clear();
+        try {
+            RequestTransportRegistry.getTransport("http").removeRequestFilter(requestFilter);
+        } catch (final RequestTransportRegistry.MissingTransportException ignore) {
+            // not installed
+        }
+        httpClient.removeRequestInterceptorByClass(ConditionalRequestInterceptor.class);
+        httpClient.removeResponseInterceptorByClass(CachingResponseInterceptor.class);
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.eviware.soapui.impl.wsdl.submit.RequestTransportRegistry;
+import com.eviware.soapui.impl.wsdl.submit.filters.AbstractRequestFilter;
+import com.eviware.soapui.impl.wsdl.submit.transports.http.HttpResponse;
+import com.eviware.soapui.model.iface.MessageExchange;
+import com.eviware.soapui.model.iface.Response;
+import com.eviware.soapui.model.iface.SubmitContext;
+import com.eviware.soapui.model.project.Project;
+import com.eviware.soapui.model.support.ModelSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Access to the raw response bodies of the test tasks for assertions, enabled with
+ * {@link SuiConstants#RESPONSE_STORE_CONFIG}.
+ *
+ * The body of the last response of a test case run is available to assertions in the property
+ * {@link #BODY_PROPERTY} of the submit context, see {@link #getBody}. The store passes on the raw body of the
+ * SoapUI response without copying it, so assertions can read it without the string that
+ * {@link MessageExchange#getResponseContent()} decodes. The store does not reduce the heap usage of the responses,
+ * SoapUI keeps the body for the lifetime of the response anyway.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class SuiResponseStore {
+
+    private final static Logger logger = LoggerFactory.getLogger(SuiResponseStore.class);
+    final static String BODY_PROPERTY = "etf.sui.response.body";
+
+    private final ConcurrentMap<Project, TaskStore> stores = new ConcurrentHashMap<>();
+    private final StoreRequestFilter requestFilter = new StoreRequestFilter();
+
+    private SuiResponseStore() {}
+
+    /**
+     * A raw response body
+     */
+    final static class Body {
+        private final byte[] content;
+        private final long timestamp;
+        private final long timeTaken;
+
+        private Body(final byte[] content, final Response response) {
+            this.content = content;
+            this.timestamp = response.getTimestamp();
+            this.timeTaken = response.getTimeTaken();
+        }
+
+        InputStream newInputStream() {
+            return new ByteArrayInputStream(content);
+        }
+
+        long size() {
+            return content.length;
+        }
+
+        private boolean belongsTo(final MessageExchange messageExchange) {
+            return messageExchange.getTimestamp() == timestamp && messageExchange.getTimeTaken() == timeTaken;
+        }
+    }
+
+    /**
+     * Statistics of the bodies of one test task
+     */
+    final static class TaskStore {
+        private final AtomicLong bodies = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+
+        private TaskStore() {}
+
+        private Body put(final byte[] content, final Response response) {
+            bodies.incrementAndGet();
+            bytes.addAndGet(content.length);
+            return new Body(content, response);
+        }
+
+        @Override
+        public String toString() {
+            return bodies.get() + " raw bodies with " + bytes.get() / 1024 + " KB passed to assertions";
+        }
+    }
+
+    /**
+     * Install the store in the SoapUI HTTP transport
+     *
+     * @return the store or null if it could not be installed
+     */
+    static SuiResponseStore install() {
+        final SuiResponseStore store = new SuiResponseStore();
+        try {
+            RequestTransportRegistry.getTransport("http").addRequestFilter(store.requestFilter);
+        } catch (final RequestTransportRegistry.MissingTransportException e) {
+            logger.warn("Response store can not be installed", e);
+            return null;
+        }
+        return store;
+    }
+
+    /**
+     * Pass the response bodies of a project to the assertions
+     *
+     * @param project
+     *            the project of a test task
+     * @return the store of the task
+     */
+    TaskStore open(final Project project) {
+        final TaskStore store = new TaskStore();
+        stores.put(project, store);
+        return store;
+    }
+
+    void close(final Project project) {
+        stores.remove(project);
+    }
+
+    /**
+     * Get the raw body of a message exchange
+     *
+     * @param context
+     *            the context the request has been submitted with
+     * @param messageExchange
+     *            the message exchange
+     * @return the body or null if the body of the message exchange has not been recorded
+     */
+    static Body getBody(final SubmitContext context, final MessageExchange messageExchange) {
+        final Object body = context.getProperty(BODY_PROPERTY);
+        if (body instanceof Body && ((Body) body).belongsTo(messageExchange)) {
+            return (Body) body;
+        }
+        return null;
+    }
+
+    private final class StoreRequestFilter extends AbstractRequestFilter {
+        @Override
+        public void afterRequest(final SubmitContext context, final Response response) {
+            if (stores.isEmpty()) {
+                return;
+            }
+            context.removeProperty(BODY_PROPERTY);
+            final TaskStore store = stores.get(ModelSupport.getModelItemProject(response.getRequest()));
+            if (store == null || !(response instanceof HttpResponse)) {
+                return;
+            }
+            final byte[] content = ((HttpResponse) response).getRawResponseBody();
+            if (content != null && content.length > 0) {
+                context.setProperty(BODY_PROPERTY, store.put(content, response));
+            }
+        }
+    }
+
+    void release() {
+        stores.clear();
+        try {
+            RequestTransportRegistry.getTransport("http").removeRequestFilter(requestFilter);
+        } catch (final RequestTransportRegistry.MissingTransportException ignore) {
+            // not installed
+        }
+    }
+}
@@ -0,0 +1,411 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * A subset of XPath that is evaluated in one pass over an XML document with a StAX reader, without building a DOM.
+ * Only the element path and, for value comparisons, the text of the current matching element are kept in memory,
+ * whether the document is read from a buffer or a file.
+ *
+ * Supported expressions, optionally preceded by <code>declare namespace p='uri';</code> declarations:
+ * <ul>
+ * <li><code>count(PATH) OP NUMBER</code> with OP one of <code>= != &lt; &lt;= &gt; &gt;=</code></li>
+ * <li><code>exists(PATH)</code> and <code>empty(PATH)</code></li>
+ * <li><code>PATH = 'value'</code> and <code>PATH != 'value'</code>, true if the string value of any matching node
+ * is (not) equal to the value</li>
+ * </ul>
+ * PATH is an absolute location path of child (<code>/</code>) and descendant (<code>//</code>) steps with
+ * qualified names or <code>*</code>. The last step may select an attribute (<code>@name</code>). The stream is
+ * only read until the result is known.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class SuiSinglePassXPath {
+
+    private final static XMLInputFactory inputFactory = createInputFactory();
+    private final static Pattern NAMESPACE_DECLARATION = Pattern.compile(
+            "\\s*declare\\s+namespace\\s+([\\w.-]+)\\s*=\\s*['\"]([^'\"]*)['\"]\\s*;");
+    private final static Pattern COUNT = Pattern.compile("count\\((.+)\\)\\s*(=|!=|<=|>=|<|>)\\s*(\\d+)");
+    private final static Pattern EXISTS = Pattern.compile("(exists|empty)\\((.+)\\)");
+    private final static Pattern VALUE = Pattern.compile("(.+?)\\s*(!=|=)\\s*(?:'([^']*)'|\"([^\"]*)\")");
+
+    private enum Test {
+        COUNT, EXISTS, EMPTY, EQUALS, NOT_EQUALS
+    }
+
+    private final String expression;
+    private final Test test;
+    private final String operator;
+    private final long expectedCount;
+    private final String expectedValue;
+    // namespace URI and local name of the element steps, null matches any
+    private final String[] namespaces;
+    private final String[] localNames;
+    private final boolean[] descendant;
+    private final String attributeNamespace;
+    private final String attributeName;
+
+    private SuiSinglePassXPath(final String expression, final Test test, final String operator,
+            final long expectedCount, final String expectedValue, final String path,
+            final Map<String, String> prefixes) throws IllegalArgumentException {
+        this.expression = expression;
+        this.test = test;
+        this.operator = operator;
+        this.expectedCount = expectedCount;
+        this.expectedValue = expectedValue;
+
+        final String trimmedPath = path.trim();
+        if (!trimmedPath.startsWith("/")) {
+            throw new IllegalArgumentException("Only absolute paths are supported: " + path);
+        }
+        final List<String[]> steps = new ArrayList<>();
+        final List<Boolean> descendantSteps = new ArrayList<>();
+        String attribute = null;
+        int pos = 0;
+        while (pos < trimmedPath.length()) {
+            final boolean isDescendant = trimmedPath.startsWith("//", pos);
+            pos += isDescendant ? 2 : 1;
+            int end = trimmedPath.indexOf('/', pos);
+            if (end == -1) {
+                end = trimmedPath.length();
+            }
+            final String step = trimmedPath.substring(pos, end).trim();
+            pos = end;
+            if (step.startsWith("@")) {
+                if (pos != trimmedPath.length() || isDescendant) {
+                    throw new IllegalArgumentException("Attributes can only be selected in the last step: " + path);
+                }
+                attribute = step.substring(1);
+            } else if (step.isEmpty() || step.contains("[") || step.contains("(") || step.contains("::")) {
+                throw new IllegalArgumentException("Unsupported step '" + step + "' in path " + path);
+            } else {
+                steps.add(resolve(step, prefixes));
+                descendantSteps.add(isDescendant);
+            }
+        }
+        if (steps.isEmpty()) {
+            throw new IllegalArgumentException("Path does not select an element: " + path);
+        }
+        this.namespaces = new String[steps.size()];
+        this.localNames = new String[steps.size()];
+        this.descendant = new boolean[steps.size()];
+        for (int i = 0; i < steps.size(); i++) {
+            namespaces[i] = steps.get(i)[0];
+            localNames[i] = steps.get(i)[1];
+            descendant[i] = descendantSteps.get(i);
+        }
+        if (attribute != null) {
+            final String[] resolved = resolve(attribute, prefixes);
+            // unprefixed attributes are in no namespace
+            this.attributeNamespace = attribute.contains(":") ? resolved[0] : "";
+            this.attributeName = resolved[1];
+        } else {
+            this.attributeNamespace = null;
+            this.attributeName = null;
+        }
+    }
+
+    private static String[] resolve(final String name, final Map<String, String> prefixes) {
+        if ("*".equals(name)) {
+            return new String[]{null, null};
+        }
+        final int colon = name.indexOf(':');
+        if (colon == -1) {
+            return new String[]{prefixes.getOrDefault("", ""), name};
+        }
+        final String prefix = name.substring(0, colon);
+        final String namespace = prefixes.get(prefix);
+        if (namespace == null) {
+            throw new IllegalArgumentException("Undeclared namespace prefix '" + prefix + "'");
+        }
+        final String localName = name.substring(colon + 1);
+        return new String[]{namespace, "*".equals(localName) ? null : localName};
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        final XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * Compile an expression
+     *
+     * @param expression
+     *            the expression with optional namespace declarations
+     * @return the compiled expression
+     * @throws IllegalArgumentException
+     *             if the expression is not part of the supported subset
+     */
+    static SuiSinglePassXPath compile(final String expression) throws IllegalArgumentException {
+        final Map<String, String> prefixes = new HashMap<>();
+        final Matcher declaration = NAMESPACE_DECLARATION.matcher(expression);
+        int start = 0;
+        while (declaration.find(start) && declaration.start() == start) {
+            prefixes.put(declaration.group(1), declaration.group(2));
+            start = declaration.end();
+        }
+        final String body = expression.substring(start).trim();
+        final Matcher count = COUNT.matcher(body);
+        if (count.matches()) {
+            return new SuiSinglePassXPath(expression, Test.COUNT, count.group(2), Long.parseLong(count.group(3)),
+                    null, count.group(1), prefixes);
+        }
+        final Matcher exists = EXISTS.matcher(body);
+        if (exists.matches()) {
+            return new SuiSinglePassXPath(expression, "exists".equals(exists.group(1)) ? Test.EXISTS : Test.EMPTY,
+                    null, 0, null, exists.group(2), prefixes);
+        }
+        final Matcher value = VALUE.matcher(body);
+        if (value.matches()) {
+            return new SuiSinglePassXPath(expression, "=".equals(value.group(2)) ? Test.EQUALS : Test.NOT_EQUALS,
+                    null, 0, value.group(3) != null ? value.group(3) : value.group(4), value.group(1), prefixes);
+        }
+        throw new IllegalArgumentException("Unsupported expression: " + body);
+    }
+
+    /**
+     * Result of an evaluation
+     */
+    final static class Result {
+        private final boolean passed;
+        private final long matches;
+        private final String message;
+
+        private Result(final boolean passed, final long matches, final String message) {
+            this.passed = passed;
+            this.matches = matches;
+            this.message = message;
+        }
+
+        boolean isPassed() {
+            return passed;
+        }
+
+        /**
+         * @return number of matching nodes read until the result was known
+         */
+        long getMatches() {
+            return matches;
+        }
+
+        String getMessage() {
+            return message;
+        }
+    }
+
+    Result evaluate(final InputStream in) throws XMLStreamException {
+        final XMLStreamReader reader = inputFactory.createXMLStreamReader(in);
+        try {
+            return evaluate(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    Result evaluate(final Reader in) throws XMLStreamException {
+        final XMLStreamReader reader = inputFactory.createXMLStreamReader(in);
+        try {
+            return evaluate(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private Result evaluate(final XMLStreamReader reader) throws XMLStreamException {
+        final List<String> namespaceStack = new ArrayList<>();
+        final List<String> localNameStack = new ArrayList<>();
+        final boolean valueTest = test == Test.EQUALS || test == Test.NOT_EQUALS;
+        final StringBuilder text = new StringBuilder();
+        // depth of the element whose text is collected, -1 if none
+        int textDepth = -1;
+        long matches = 0;
+
+        while (reader.hasNext()) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                namespaceStack.add(nullToEmpty(reader.getNamespaceURI()));
+                localNameStack.add(reader.getLocalName());
+                if (textDepth == -1 && matches(namespaceStack, localNameStack)) {
+                    if (attributeName != null) {
+                        final String attributeValue = reader.getAttributeValue(
+                                attributeNamespace.isEmpty() ? null : attributeNamespace, attributeName);
+                        if (attributeValue != null) {
+                            matches++;
+                            if (isDecided(matches, attributeValue)) {
+                                return result(matches, attributeValue);
+                            }
+                        }
+                    } else if (valueTest) {
+                        textDepth = localNameStack.size();
+                        text.setLength(0);
+                    } else {
+                        matches++;
+                        if (isDecided(matches, null)) {
+                            return result(matches, null);
+                        }
+                    }
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (textDepth == localNameStack.size()) {
+                    textDepth = -1;
+                    matches++;
+                    final String value = text.toString();
+                    if (isDecided(matches, value)) {
+                        return result(matches, value);
+                    }
+                }
+                namespaceStack.remove(namespaceStack.size() - 1);
+                localNameStack.remove(localNameStack.size() - 1);
+            } else if (textDepth != -1 && (event == XMLStreamConstants.CHARACTERS
+                    || event == XMLStreamConstants.CDATA || event == XMLStreamConstants.SPACE)) {
+                text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+            }
+        }
+        return result(matches, null);
+    }
+
+    /**
+     * @return true if the result can not change anymore
+     */
+    private boolean isDecided(final long matches, final String value) {
+        switch (test) {
+        case EXISTS:
+        case EMPTY:
+            return true;
+        case EQUALS:
+        case NOT_EQUALS:
+            return expectedValue.equals(value) == (test == Test.EQUALS);
+        default:
+            // a count can only increase, no operator changes its result after the expected count is exceeded
+            return matches > expectedCount;
+        }
+    }
+
+    private Result result(final long matches, final String value) {
+        final boolean passed;
+        switch (test) {
+        case EXISTS:
+            passed = matches > 0;
+            break;
+        case EMPTY:
+            passed = matches == 0;
+            break;
+        case EQUALS:
+        case NOT_EQUALS:
+            passed = value != null && expectedValue.equals(value) == (test == Test.EQUALS);
+            break;
+        default:
+            passed = compare(matches);
+        }
+        if (passed) {
+            return new Result(true, matches, null);
+        }
+        switch (test) {
+        case EXISTS:
+            return new Result(false, matches, "No node matches " + expression);
+        case EMPTY:
+            return new Result(false, matches, "At least one node matches " + expression);
+        case EQUALS:
+            return new Result(false, matches, "None of the " + matches + " matching nodes has the value '"
+                    + expectedValue + "': " + expression);
+        case NOT_EQUALS:
+            return new Result(false, matches, matches == 0 ? "No node matches " + expression
+                    : "A matching node has the value '" + expectedValue + "': " + expression);
+        default:
+            return new Result(false, matches, (matches > expectedCount ? "Found at least " : "Found ") + matches
+                    + " matching nodes, expected " + operator + " " + expectedCount + ": " + expression);
+        }
+    }
+
+    private boolean compare(final long count) {
+        switch (operator) {
+        case "=":
+            return count == expectedCount;
+        case "!=":
+            return count != expectedCount;
+        case "<":
+            return count < expectedCount;
+        case "<=":
+            return count <= expectedCount;
+        case ">":
+            return count > expectedCount;
+        default:
+            return count >= expectedCount;
+        }
+    }
+
+    private boolean matches(final List<String> namespaceStack, final List<String> localNameStack) {
+        return matches(namespaceStack, localNameStack, 0, 0);
+    }
+
+    private boolean matches(final List<String> namespaceStack, final List<String> localNameStack,
+            final int step, final int depth) {
+        if (step == localNames.length) {
+            return depth == localNameStack.size();
+        }
+        if (depth >= localNameStack.size()) {
+            return false;
+        }
+        if (descendant[step]) {
+            for (int d = depth; d < localNameStack.size(); d++) {
+                if (matchesStep(step, namespaceStack.get(d), localNameStack.get(d))
+                        && matches(namespaceStack, localNameStack, step + 1, d + 1)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return matchesStep(step, namespaceStack.get(depth), localNameStack.get(depth))
+                && matches(namespaceStack, localNameStack, step + 1, depth + 1);
+    }
+
+    private boolean matchesStep(final int step, final String namespace, final String localName) {
+        return (namespaces[step] == null || namespaces[step].equals(namespace))
+                && (localNames[step] == null || localNames[step].equals(localName));
+    }
+
+    private static String nullToEmpty(final String value) {
+        return value != null ? value : "";
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
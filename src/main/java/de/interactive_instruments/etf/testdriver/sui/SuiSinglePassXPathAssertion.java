@@ -0,0 +1,165 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+
+import javax.xml.stream.XMLStreamException;
+
+import com.eviware.soapui.config.TestAssertionConfig;
+import com.eviware.soapui.impl.wsdl.panels.assertions.AssertionListEntry;
+import com.eviware.soapui.impl.wsdl.teststeps.WsdlMessageAssertion;
+import com.eviware.soapui.impl.wsdl.teststeps.assertions.AbstractTestAssertionFactory;
+import com.eviware.soapui.model.iface.MessageExchange;
+import com.eviware.soapui.model.iface.SubmitContext;
+import com.eviware.soapui.model.propertyexpansion.PropertyExpander;
+import com.eviware.soapui.model.testsuite.Assertable;
+import com.eviware.soapui.model.testsuite.AssertionError;
+import com.eviware.soapui.model.testsuite.AssertionException;
+import com.eviware.soapui.model.testsuite.TestPropertyHolder;
+import com.eviware.soapui.support.StringUtils;
+import com.eviware.soapui.support.xml.XmlObjectConfigurationReader;
+
+import org.apache.xmlbeans.XmlObject;
+
+/**
+ * Assertion that evaluates a {@link SuiSinglePassXPath} expression in one pass over the response, for responses that
+ * are too large to be parsed into a DOM.
+ *
+ * The assertion does not stream the response from the network: SoapUI has already received and buffered the whole
+ * response when assertions are evaluated. What is saved is the DOM, which would take a multiple of the response size.
+ * The raw response body is read from the {@link SuiResponseStore} if it is enabled, which saves decoding it into a
+ * string, otherwise from the response content that SoapUI holds in memory.
+ *
+ * The expression is configured in the <code>path</code> element of the assertion configuration and may contain
+ * property expansions. The class is public, as SoapUI instantiates assertions reflectively.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public final class SuiSinglePassXPathAssertion extends WsdlMessageAssertion {
+
+    final static String ID = "ETF Single Pass XPath Match";
+    final static String LABEL = "Single Pass XPath Match";
+    private final static String DESCRIPTION = "Counts or compares nodes of large XML responses in one pass, without "
+            + "building a DOM";
+
+    private final String path;
+    private volatile SuiSinglePassXPath compiled;
+
+    public SuiSinglePassXPathAssertion(final TestAssertionConfig assertionConfig, final Assertable assertable) {
+        super(assertionConfig, assertable, true, false, true, true);
+        final XmlObject configuration = getConfiguration();
+        this.path = configuration != null
+                ? new XmlObjectConfigurationReader(configuration).readString("path", null)
+                : null;
+    }
+
+    @Override
+    protected String internalAssertResponse(final MessageExchange messageExchange, final SubmitContext context)
+            throws AssertionException {
+        if (!messageExchange.hasResponse()) {
+            throw new AssertionException(new AssertionError("Missing response"));
+        }
+        final SuiResponseStore.Body body = SuiResponseStore.getBody(context, messageExchange);
+        if (body != null) {
+            final long start = System.nanoTime();
+            try (final InputStream in = body.newInputStream()) {
+                final SuiSinglePassXPath.Result result = expression(context).evaluate(in);
+                SuiMetrics.current().recordAssertion(System.nanoTime() - start);
+                return assertResult(result);
+            } catch (final IllegalArgumentException | XMLStreamException | IOException e) {
+                throw new AssertionException(new AssertionError(e.getMessage()));
+            }
+        }
+        return assertContent(messageExchange.getResponseContent(), context);
+    }
+
+    @Override
+    protected String internalAssertRequest(final MessageExchange messageExchange, final SubmitContext context)
+            throws AssertionException {
+        return assertContent(messageExchange.getRequestContent(), context);
+    }
+
+    @Override
+    protected String internalAssertProperty(final TestPropertyHolder source, final String propertyName,
+            final MessageExchange messageExchange, final SubmitContext context) throws AssertionException {
+        return assertContent(source.getPropertyValue(propertyName), context);
+    }
+
+    private String assertContent(final String content, final SubmitContext context) throws AssertionException {
+        if (StringUtils.isNullOrEmpty(content)) {
+            throw new AssertionException(new AssertionError("Missing content"));
+        }
+        final long start = System.nanoTime();
+        try {
+            final SuiSinglePassXPath.Result result = expression(context).evaluate(new StringReader(content));
+            SuiMetrics.current().recordAssertion(System.nanoTime() - start);
+            return assertResult(result);
+        } catch (final IllegalArgumentException | XMLStreamException e) {
+            throw new AssertionException(new AssertionError(e.getMessage()));
+        }
+    }
+
+    private static String assertResult(final SuiSinglePassXPath.Result result) throws AssertionException {
+        if (!result.isPassed()) {
+            throw new AssertionException(new AssertionError(result.getMessage()));
+        }
+        return "Single pass XPath match";
+    }
+
+    private SuiSinglePassXPath expression(final SubmitContext context) {
+        if (StringUtils.isNullOrEmpty(path)) {
+            throw new IllegalArgumentException("Missing XPath expression");
+        }
+        final String expanded = PropertyExpander.expandProperties(context, path);
+        final SuiSinglePassXPath current = compiled;
+        if (current != null && current.toString().equals(expanded)) {
+            return current;
+        }
+        final SuiSinglePassXPath expression = SuiSinglePassXPath.compile(expanded);
+        compiled = expression;
+        return expression;
+    }
+
+    final static class Factory extends AbstractTestAssertionFactory {
+
+        Factory() {
+            super(ID, LABEL, SuiSinglePassXPathAssertion.class);
+        }
+
+        @Override
+        public String getCategory() {
+            return "Validate Response Content";
+        }
+
+        @Override
+        public Class<? extends WsdlMessageAssertion> getAssertionClassType() {
+            return SuiSinglePassXPathAssertion.class;
+        }
+
+        @Override
+        public AssertionListEntry getAssertionListEntry() {
+            return new AssertionListEntry(ID, LABEL, DESCRIPTION);
+        }
+    }
+}
@@ -28,11 +28,13 @@ import static de.interactive_instruments.etf.testdriver.sui.SuiTestDriver.SUI_TE
 import java.io.File;
 import java.util.Collection;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
 import com.eviware.soapui.SoapUI;
 import com.eviware.soapui.SoapUIExtensionClassLoader;
+import com.eviware.soapui.impl.wsdl.teststeps.assertions.TestAssertionRegistry;
 
 import de.interactive_instruments.IFile;
 import de.interactive_instruments.etf.EtfConstants;
@@ -66,6 +68,14 @@ public class SuiTestDriver extends AbstractTestDriver {
     public static final String SUI_TEST_DRIVER_EID = "4838e01b-4186-4d2d-a93a-414b9e9a49a7";
     private DataStorage dataStorageCallback;
     private boolean pluginsInitialized = false;
+    private final SuiProjectTemplateCache projectTemplateCache = new SuiProjectTemplateCache();
+    private SuiConnectionPool connectionPool;
+    private SuiResponseCache responseCache;
+    private SuiGroovyScriptCache scriptCache;
+    private SuiResponseStore responseStore;
+    private SuiDurationStore durationStore;
+    private SuiMetrics metrics;
+    private SuiDriverManagement management;
 
     final static ComponentInfo COMPONENT_INFO = new ComponentInfo() {
         @Override
@@ -119,7 +129,12 @@ public class SuiTestDriver extends AbstractTestDriver {
             final TestTaskResultDto testTaskResult = new TestTaskResultDto();
             testTaskResult.setId(EidFactory.getDefault().createRandomId());
             testTaskDto.setTestTaskResult(testTaskResult);
-            return new SuiTestTask(testTaskDto, configProperties);
+            final SuiTestTask testTask = new SuiTestTask(testTaskDto, configProperties, projectTemplateCache,
+                    connectionPool, responseCache, scriptCache, responseStore, durationStore);
+            if (management != null) {
+                management.track(testTask);
+            }
+            return testTask;
         } catch (IncompleteDtoException e) {
             throw new TestTaskInitializationException(e);
         }
@@ -134,15 +149,51 @@ public class SuiTestDriver extends AbstractTestDriver {
             throw new InvalidStateTransitionException("Data Storage not set");
         }
 
-        SoapUI.setSoapUICore(IISoapUICore.createDefault(), true);
+        final int maxConnections = Integer.parseInt(
+                configProperties.getPropertyOrDefault(SuiConstants.HTTP_MAX_TOTAL_CONFIG, "2000"));
+        final int maxConnectionsPerHost = Integer.parseInt(
+                configProperties.getPropertyOrDefault(SuiConstants.HTTP_MAX_PER_ROUTE_CONFIG, "50"));
+        SoapUI.setSoapUICore(IISoapUICore.createDefault(settings -> {
+            // Don't let SoapUI re-encode the URLs
+            settings.setBoolean(ENCODED_URLS, true);
+            SuiConnectionPool.configure(settings, maxConnections, maxConnectionsPerHost);
+        }), true);
+
+        connectionPool = SuiConnectionPool.install(maxConnections, maxConnectionsPerHost,
+                Long.parseLong(configProperties.getPropertyOrDefault(SuiConstants.HTTP_IDLE_TIMEOUT_CONFIG, "30")));
+        final long responseCacheSize = Long.parseLong(
+                configProperties.getPropertyOrDefault(SuiConstants.HTTP_CACHE_SIZE_CONFIG, "64"));
+        if (responseCacheSize > 0) {
+            responseCache = SuiResponseCache.install(responseCacheSize * 1024 * 1024);
+        }
+
+        if (Boolean.parseBoolean(configProperties.getPropertyOrDefault(SuiConstants.RESPONSE_STORE_CONFIG, "false"))) {
+            responseStore = SuiResponseStore.install();
+        }
+
+        metrics = SuiMetrics.install(configProperties.getPropertyOrDefault(SuiConstants.METRICS_BACKEND_CONFIG,
+                "none"));
+        durationStore = new SuiDurationStore(SuiCacheDir.of(
+                configProperties.getProperty(SuiConstants.DURATION_STORE_DIR_CONFIG), "durations"));
 
-        // Don't let SoapUI re-encode the URLs
-        SoapUI.getSettings().setBoolean(ENCODED_URLS, true);
+        TestAssertionRegistry.getInstance().addAssertion(new SuiSinglePassXPathAssertion.Factory());
+        if (Boolean.parseBoolean(configProperties.getPropertyOrDefault(SuiConstants.GROOVY_CACHE_CONFIG, "true"))) {
+            scriptCache = SuiGroovyScriptCache.install();
+            projectTemplateCache.setScriptCache(scriptCache);
+        }
+        projectTemplateCache.setDefinitionCache(new SuiDefinitionCache(
+                SuiCacheDir.of(configProperties.getProperty(SuiConstants.DEFINITION_CACHE_DIR_CONFIG), "definitions"),
+                TimeUnit.MINUTES.toMillis(Long.parseLong(configProperties.getPropertyOrDefault(
+                        SuiConstants.DEFINITION_CACHE_MAX_AGE_CONFIG, "1440")))));
 
         propagateComponents();
 
-        loader = new SuiFileLoaderFactory(dataStorageCallback);
+        loader = new SuiFileLoaderFactory(dataStorageCallback, projectTemplateCache);
         loader.getConfigurationProperties().setPropertiesFrom(configProperties, true);
+
+        management = new SuiDriverManagement(projectTemplateCache, (SuiFileLoaderFactory) loader, connectionPool,
+                responseCache, scriptCache);
+        management.register();
     }
 
     private void initPlugins(final IFile pluginDir) {
@@ -201,5 +252,25 @@ public class SuiTestDriver extends AbstractTestDriver {
     }
 
     @Override
-    public void doRelease() {}
+    public void doRelease() {
+        if (management != null) {
+            management.release();
+        }
+        projectTemplateCache.clear();
+        if (connectionPool != null) {
+            connectionPool.release();
+        }
+        if (responseCache != null) {
+            responseCache.release();
+        }
+        if (scriptCache != null) {
+            scriptCache.release();
+        }
+        if (responseStore != null) {
+            responseStore.release();
+        }
+        if (metrics != null) {
+            metrics.release();
+        }
+    }
 }
@@ -0,0 +1,104 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+/**
+ * Management interface of the SoapUI test driver, registered as
+ * <code>de.interactive_instruments.etf:type=TestDriver,name=SoapUI</code>
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+public interface SuiTestDriverMXBean {
+
+    /**
+     * @return number of test tasks that are running
+     */
+    int getActiveTaskCount();
+
+    /**
+     * @return number of test tasks that have been created but not started yet
+     */
+    int getQueuedTaskCount();
+
+    /**
+     * @return one line per queued or running test task: id, label, phase, elapsed time and progress
+     */
+    String[] getTasks();
+
+    int getConnectionsInPool();
+
+    int getMaxConnections();
+
+    long getConnectionsCreated();
+
+    long getConnectionsReused();
+
+    long getPendingRequests();
+
+    long getProjectCacheHits();
+
+    long getProjectCacheMisses();
+
+    long getEtsCacheHits();
+
+    long getEtsCacheMisses();
+
+    long getDefinitionCacheHits();
+
+    long getDefinitionCacheMisses();
+
+    long getScriptCacheHits();
+
+    long getScriptCacheMisses();
+
+    long getResponseCacheHits();
+
+    long getResponseCacheMisses();
+
+    /**
+     * @return size of the cached responses in bytes
+     */
+    long getResponseCacheSize();
+
+    /**
+     * @return number of loaded Executable Test Suites
+     */
+    int getLoadedEtsCount();
+
+    /**
+     * @return duration of the last load of project files in milliseconds or -1
+     */
+    long getLastLoadMillis();
+
+    /**
+     * Cancel a running or queued test task
+     *
+     * @param taskId
+     *            id of the test task
+     * @return true if the task has been found and cancelled
+     */
+    boolean cancelTask(String taskId);
+
+    /**
+     * Evict the cached project templates, HTTP responses and compiled Groovy scripts. The caches on disk are kept.
+     */
+    void evictCaches();
+}
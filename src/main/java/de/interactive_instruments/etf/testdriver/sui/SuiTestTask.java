@@ -22,7 +22,10 @@ package de.interactive_instruments.etf.testdriver.sui;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 import com.eviware.soapui.impl.wsdl.WsdlProject;
 
@@ -47,6 +50,28 @@ class SuiTestTask extends AbstractTestTask {
     private STestCaseRunner runner = null;
     private IFile tmpProjectFile;
     private final ConfigPropertyHolder config;
+    private final SuiProjectTemplateCache projectTemplateCache;
+    private final SuiConnectionPool connectionPool;
+    private final SuiResponseCache responseCache;
+    private SuiResponseCache.Stats responseCacheStats;
+    private final SuiGroovyScriptCache scriptCache;
+    private final SuiResponseStore responseStore;
+    private SuiResponseStore.TaskStore taskResponseStore;
+    private final SuiDurationStore durationStore;
+    private SuiDurationStore.Durations durations;
+    private volatile Phase phase = Phase.QUEUED;
+    private volatile long startTime;
+
+    enum Phase {
+        QUEUED, RUNNING, COMPLETED, FAILED, CANCELED, RELEASED;
+
+        /**
+         * @return true if the task will not run anymore
+         */
+        boolean isTerminal() {
+            return this != QUEUED && this != RUNNING;
+        }
+    }
 
     /**
      * Default constructor.
@@ -54,14 +79,49 @@ class SuiTestTask extends AbstractTestTask {
      * @throws IOException
      *             I/O error
      */
-    public SuiTestTask(final TestTaskDto testTaskDto, final ConfigPropertyHolder config) {
+    public SuiTestTask(final TestTaskDto testTaskDto, final ConfigPropertyHolder config,
+            final SuiProjectTemplateCache projectTemplateCache, final SuiConnectionPool connectionPool,
+            final SuiResponseCache responseCache, final SuiGroovyScriptCache scriptCache,
+            final SuiResponseStore responseStore, final SuiDurationStore durationStore) {
         super(testTaskDto, new SuiTestTaskProgress(), SuiTestTask.class.getClassLoader());
         this.config = config;
+        this.projectTemplateCache = projectTemplateCache;
+        this.connectionPool = connectionPool;
+        this.responseCache = responseCache;
+        this.scriptCache = scriptCache;
+        this.responseStore = responseStore;
+        this.durationStore = durationStore;
     }
 
     @Override
     protected void doRun() throws Exception {
-        runner.runRunner();
+        startTime = System.currentTimeMillis();
+        phase = Phase.RUNNING;
+        boolean completed = false;
+        try {
+            runner.runRunner();
+            completed = true;
+        } finally {
+            if (phase == Phase.RUNNING) {
+                phase = completed ? Phase.COMPLETED : Phase.FAILED;
+            }
+            if (durations != null) {
+                durationStore.save(durations);
+            }
+        }
+        getLogger().info("Progress: {}", ((SuiTestTaskProgress) progress).getSnapshot());
+        if (connectionPool != null) {
+            getLogger().info("HTTP {}", connectionPool);
+        }
+        if (responseCacheStats != null) {
+            getLogger().info("HTTP response cache: {}", responseCacheStats);
+        }
+        if (scriptCache != null) {
+            getLogger().info("{}", scriptCache);
+        }
+        if (taskResponseStore != null) {
+            getLogger().info("Responses: {}", taskResponseStore);
+        }
     }
 
     @Override
@@ -72,16 +132,26 @@ class SuiTestTask extends AbstractTestTask {
             }
             final IFile originalProjectFile = new IFile(testTaskDto.getExecutableTestSuite().getLocalPath());
             originalProjectFile.expectFileIsReadable();
-            tmpProjectFile = originalProjectFile.createTempCopy(IFile.sanitize(
-                    testTaskDto.getExecutableTestSuite().getLabel()) + "_ets", "etf");
-            tmpProjectFile.expectIsReadAndWritable();
+            final SuiProjectTemplate projectTemplate = projectTemplateCache.get(
+                    testTaskDto.getExecutableTestSuite().getId(), originalProjectFile);
+            if (projectTemplate == null) {
+                tmpProjectFile = originalProjectFile.createTempCopy(IFile.sanitize(
+                        testTaskDto.getExecutableTestSuite().getLabel()) + "_ets", "etf");
+                tmpProjectFile.expectIsReadAndWritable();
+            }
 
             // Set Soapui project Properties
             final List<String> properties = new ArrayList<String>();
 
+            final Map<String, String> settingsOverrides = new HashMap<>();
             testTaskDto.getArguments().values().entrySet().stream().filter(kvp -> kvp.getKey() != null).forEach(kvp -> {
-                properties.add(kvp.getKey());
-                properties.add(kvp.getValue());
+                if (kvp.getKey().startsWith(SuiConstants.SETTINGS_ARGUMENT_PREFIX)) {
+                    settingsOverrides.put(kvp.getKey().substring(SuiConstants.SETTINGS_ARGUMENT_PREFIX.length()),
+                            kvp.getValue());
+                } else {
+                    properties.add(kvp.getKey());
+                    properties.add(kvp.getValue());
+                }
             });
 
             // Set test object resources
@@ -102,18 +172,44 @@ class SuiTestTask extends AbstractTestTask {
             properties.add("basic");
 
             // Run Functional Tests ( also for generating Request for LoadTests )
+            ((SuiTestTaskProgress) progress).setListener(snapshot -> getLogger().info("Progress: {}", snapshot));
             runner = new STestCaseRunner((SuiTestTaskProgress) progress);
             runner.setProjectProperties(properties.toArray(new String[properties.size()]));
+            runner.setSettingsOverrides(settingsOverrides);
+            runner.setParallelWorkers(Integer.parseInt(
+                    config.getPropertyOrDefault(SuiConstants.PARALLEL_WORKERS_CONFIG, "1")));
+            runner.setTestCaseWorkers(Integer.parseInt(
+                    config.getPropertyOrDefault(SuiConstants.TESTCASE_WORKERS_CONFIG, "1")));
+            runner.setVirtualThreads(Boolean.parseBoolean(
+                    config.getPropertyOrDefault(SuiConstants.VIRTUAL_THREADS_CONFIG, "false")));
+            if (durationStore != null) {
+                durations = durationStore.load(testTaskDto.getExecutableTestSuite().getId(), getTestObjectHost());
+                runner.setDurations(durations);
+            }
 
             // Deactivate UI funtions
             runner.setEnableUI(false);
 
-            // Set project file
-            runner.setProjectFile(tmpProjectFile.getAbsolutePath());
+            // Set project file or use the parsed project
+            if (projectTemplate != null) {
+                runner.setProjectTemplate(projectTemplate);
+                runner.setProjectFile(originalProjectFile.getAbsolutePath());
+            } else {
+                runner.setProjectFile(tmpProjectFile.getAbsolutePath());
+            }
 
             runner.setOutputFolder(getCollector().getTempDir().getAbsolutePath());
 
             wsdlProject = runner.initProject(getCollector());
+            if (responseCache != null) {
+                responseCacheStats = responseCache.open(wsdlProject);
+            }
+            if (responseStore != null) {
+                taskResponseStore = responseStore.open(wsdlProject);
+            }
+            if (scriptCache != null) {
+                scriptCache.open(wsdlProject, projectTemplate != null ? projectTemplate.getScope() : wsdlProject);
+            }
             if (wsdlProject.getActiveEnvironment() instanceof TestResultCollectorInjector) {
                 ((TestResultCollectorInjector) wsdlProject.getActiveEnvironment())
                         .setTestResultCollector(getPersistor().getResultCollector());
@@ -134,13 +230,60 @@ class SuiTestTask extends AbstractTestTask {
             }
 
         } catch (Exception e) {
+            phase = Phase.FAILED;
             throw new ExecutableTestSuiteUnavailable(testTaskDto.getExecutableTestSuite(), e);
         }
     }
 
+    /**
+     * @return the host of the first test object resource with a host or null
+     */
+    private String getTestObjectHost() {
+        return testTaskDto.getTestObject().getResources().values().stream()
+                .map(r -> r.getUri().getHost()).filter(Objects::nonNull).findFirst().orElse(null);
+    }
+
+    String getTaskId() {
+        return testTaskDto.getId().getId();
+    }
+
+    String getEtsLabel() {
+        return testTaskDto.getExecutableTestSuite().getLabel();
+    }
+
+    Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * @return milliseconds since the task has been started or 0 if it has not been started yet
+     */
+    long getElapsedMillis() {
+        final long start = startTime;
+        return start == 0 ? 0 : System.currentTimeMillis() - start;
+    }
+
+    SuiTestTaskProgress.Snapshot getProgressSnapshot() {
+        return ((SuiTestTaskProgress) progress).getSnapshot();
+    }
+
     @Override
     public void doRelease() {
+        phase = Phase.RELEASED;
+        if (durations != null) {
+            durationStore.release(durations);
+            durations = null;
+        }
         if (wsdlProject != null) {
+            if (responseCache != null) {
+                responseCache.close(wsdlProject);
+            }
+            if (responseStore != null) {
+                responseStore.close(wsdlProject);
+            }
+            if (scriptCache != null) {
+                scriptCache.close(wsdlProject);
+            }
             if (wsdlProject.getActiveEnvironment() != null) {
                 wsdlProject.getActiveEnvironment().release();
             }
@@ -150,6 +293,9 @@ class SuiTestTask extends AbstractTestTask {
 
     @Override
     protected void doCancel() throws InvalidStateTransitionException {
+        if (!phase.isTerminal()) {
+            phase = Phase.CANCELED;
+        }
         if (runner != null) {
             runner.cancel();
         }
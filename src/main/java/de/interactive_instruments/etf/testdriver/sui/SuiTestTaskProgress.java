@@ -20,6 +20,10 @@
  */
 package de.interactive_instruments.etf.testdriver.sui;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
 import com.eviware.soapui.model.environment.Environment;
 import com.eviware.soapui.model.iface.Interface;
 import com.eviware.soapui.model.mock.MockService;
@@ -31,20 +35,158 @@ import com.eviware.soapui.security.SecurityTest;
 import de.interactive_instruments.etf.testdriver.AbstractTestTaskProgress;
 
 /**
+ * Progress of a test task, counted in executed test steps.
+ *
+ * The runner sets the number of enabled test steps after the project has been loaded and reports each executed
+ * step. Test steps that are executed more than once, for instance by a "Run TestCase" step, raise the total. The
+ * counters are lock-free, as steps may be executed in parallel. A snapshot with the estimated time until
+ * completion, based on the average step rate so far and the duration of previous runs, is published to the listener
+ * at most once per publish interval.
+ *
  * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
  */
 class SuiTestTaskProgress extends AbstractTestTaskProgress implements ProjectListener, TestSuiteListener {
 
-    private int remainingSteps;
+    private final static long PUBLISH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private final AtomicLong totalSteps = new AtomicLong();
+    private final AtomicLong completedSteps = new AtomicLong();
+    private final AtomicLong lastPublished = new AtomicLong();
+    private volatile long startNanos;
+    private volatile long expectedMillis = -1;
+    private volatile Consumer<Snapshot> listener;
+
+    /**
+     * Progress at a point in time
+     */
+    final static class Snapshot {
+        private final long completed;
+        private final long total;
+        private final long elapsedMillis;
+        private final long etaMillis;
+
+        private Snapshot(final long completed, final long total, final long elapsedMillis, final long etaMillis) {
+            this.completed = completed;
+            this.total = total;
+            this.elapsedMillis = elapsedMillis;
+            this.etaMillis = etaMillis;
+        }
+
+        long getCompleted() {
+            return completed;
+        }
+
+        long getTotal() {
+            return total;
+        }
+
+        long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * @return estimated milliseconds until all steps are completed or -1 if no step has been completed yet
+         */
+        long getEtaMillis() {
+            return etaMillis;
+        }
+
+        int getPercent() {
+            return total == 0 ? 0 : (int) (completed * 100 / total);
+        }
+
+        @Override
+        public String toString() {
+            return completed + " of " + total + " test steps executed (" + getPercent() + "%), "
+                    + (etaMillis < 0 ? "remaining time unknown"
+                            : "about " + TimeUnit.MILLISECONDS.toSeconds(etaMillis) + "s remaining");
+        }
+    }
+
+    /**
+     * Set the listener for throttled progress updates
+     */
+    void setListener(final Consumer<Snapshot> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Set the number of test steps that will be executed and start measuring
+     *
+     * @param steps
+     *            number of test steps
+     * @param expectedMillis
+     *            duration of previous runs or -1 if unknown
+     */
+    void initSteps(final long steps, final long expectedMillis) {
+        this.expectedMillis = expectedMillis;
+        totalSteps.set(steps);
+        completedSteps.set(0);
+        startNanos = System.nanoTime();
+        lastPublished.set(startNanos);
+    }
+
+    /**
+     * Count an executed test step and publish the progress if the publish interval has elapsed
+     */
+    void stepCompleted() {
+        final long completed = completedSteps.incrementAndGet();
+        if (completed > totalSteps.get()) {
+            totalSteps.accumulateAndGet(completed, Math::max);
+        }
+        final Consumer<Snapshot> currentListener = listener;
+        if (currentListener == null) {
+            return;
+        }
+        final long now = System.nanoTime();
+        final long last = lastPublished.get();
+        if (now - last >= PUBLISH_INTERVAL_NANOS && lastPublished.compareAndSet(last, now)) {
+            currentListener.accept(snapshot(now));
+        }
+    }
+
+    Snapshot getSnapshot() {
+        return snapshot(System.nanoTime());
+    }
+
+    private Snapshot snapshot(final long now) {
+        final long completed = completedSteps.get();
+        final long total = Math.max(totalSteps.get(), completed);
+        final long elapsedMillis = startNanos == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(now - startNanos);
+        final long rateEtaMillis = completed == 0 ? -1 : elapsedMillis * (total - completed) / completed;
+        final long etaMillis;
+        if (expectedMillis < 0) {
+            etaMillis = rateEtaMillis;
+        } else {
+            // blend the duration of previous runs with the current step rate, weighted by the completed fraction
+            final long historyEtaMillis = Math.max(0, expectedMillis - elapsedMillis);
+            if (rateEtaMillis < 0) {
+                etaMillis = historyEtaMillis;
+            } else {
+                final double fraction = total == 0 ? 1 : (double) completed / total;
+                etaMillis = Math.round(fraction * rateEtaMillis + (1 - fraction) * historyEtaMillis);
+            }
+        }
+        return new Snapshot(completed, total, elapsedMillis, etaMillis);
+    }
+
+    @Override
+    public long getMaxSteps() {
+        return Math.max(totalSteps.get(), completedSteps.get());
+    }
+
+    @Override
+    public long getCurrentStepsCompleted() {
+        return completedSteps.get();
+    }
 
     @Override
     public void testStepAdded(final TestStep arg0, final int arg1) {
-        this.remainingSteps++;
+        totalSteps.incrementAndGet();
     }
 
     @Override
     public void testStepRemoved(final TestStep arg0, final int arg1) {
-        this.remainingSteps--;
+        totalSteps.decrementAndGet();
     }
 
     @Override
@@ -89,7 +231,7 @@ class SuiTestTaskProgress extends AbstractTestTaskProgress implements ProjectLis
 
     @Override
     public void afterLoad(final Project project) {
-        int bla;
+
     }
 
     @Override
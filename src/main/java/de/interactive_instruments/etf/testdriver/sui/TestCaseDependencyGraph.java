@@ -0,0 +1,190 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.eviware.soapui.impl.wsdl.WsdlTestSuite;
+import com.eviware.soapui.impl.wsdl.testcase.WsdlTestCase;
+import com.eviware.soapui.impl.wsdl.teststeps.WsdlRunTestCaseTestStep;
+import com.eviware.soapui.model.testsuite.TestStep;
+
+import de.interactive_instruments.SUtils;
+
+/**
+ * Dependencies between the test cases of a test suite.
+ *
+ * A test case depends on a preceding test case of the same suite if one of them runs the other one (or both run
+ * the same test case) or if one of them writes a test suite or project property the other one reads or writes.
+ * Property accesses are detected in the configuration of the test case: property expansions, property transfers
+ * and literal property names passed to <code>getPropertyValue</code> or <code>setPropertyValue</code> in scripts.
+ * Test cases that access properties in a way that can not be attributed to a property name, i.e. names passed in
+ * variables or Groovy accessors like <code>testSuite.properties.name.value</code>, are ordered after all preceding
+ * and before all subsequent test cases. Properties of the run context are not shared and are ignored.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class TestCaseDependencyGraph {
+
+    private final static Pattern EXPANSION_READ = Pattern.compile("\\$\\{#(?:TestSuite|Project)#([^}]+)}");
+    private final static Pattern SCRIPT_READ = Pattern.compile("getPropertyValue\\(\\s*[\"']([^\"']+)[\"']");
+    private final static Pattern SCRIPT_WRITE = Pattern.compile("setPropertyValue\\(\\s*[\"']([^\"']+)[\"']");
+    private final static Pattern TRANSFER_WRITE = Pattern.compile(
+            "<con:targetType>([^<]+)</con:targetType>\\s*<con:targetStep>#(?:TestSuite|Project)#</con:targetStep>");
+    private final static Pattern TRANSFER_READ = Pattern.compile(
+            "<con:sourceType>([^<]+)</con:sourceType>\\s*<con:sourceStep>#(?:TestSuite|Project)#</con:sourceStep>");
+    // Property accesses that can not be attributed to a property name
+    private final static Pattern OPAQUE_ACCESS = Pattern.compile(
+            // names in variables
+            "(?:get|set)PropertyValue\\(\\s*[^\"'\\s]|expand\\(\\s*[^\"'\\s]|\\$\\{#(?:TestSuite|Project)#[^}]*\\$\\{"
+                    // Groovy accessors and property holder methods, except of the run context
+                    + "|(?<!context)\\.(?:properties\\b|propertyNames\\b|getProperty\\(|setProperty\\(|getProperties\\("
+                    + "|getPropertyAt\\(|getPropertyList\\(|getPropertyNames\\()"
+                    + "|removeProperty|addProperty|renameProperty|moveProperty|setPropertiesFromFile");
+
+    private final List<WsdlTestCase> testCases;
+    private final List<List<Integer>> dependents;
+    private final int[] inDegrees;
+
+    private final static class Access {
+        private final Set<Object> testCases = new HashSet<>();
+        private final Set<String> reads = new HashSet<>();
+        private final Set<String> writes = new HashSet<>();
+        private boolean opaque;
+
+        private boolean conflicts(final Access other) {
+            if (opaque || other.opaque) {
+                return true;
+            }
+            if (!Collections.disjoint(testCases, other.testCases)) {
+                return true;
+            }
+            return !Collections.disjoint(writes, other.writes) || !Collections.disjoint(writes, other.reads)
+                    || !Collections.disjoint(reads, other.writes);
+        }
+    }
+
+    private TestCaseDependencyGraph(final List<WsdlTestCase> testCases) {
+        this.testCases = testCases;
+        final int size = testCases.size();
+        this.dependents = new ArrayList<>(size);
+        this.inDegrees = new int[size];
+        final List<Access> accesses = new ArrayList<>(size);
+        for (final WsdlTestCase testCase : testCases) {
+            dependents.add(new ArrayList<>());
+            final Access access = new Access();
+            collect(testCase, access);
+            accesses.add(access);
+        }
+        for (int i = 0; i < size; i++) {
+            for (int j = i + 1; j < size; j++) {
+                if (accesses.get(i).conflicts(accesses.get(j))) {
+                    dependents.get(i).add(j);
+                    inDegrees[j]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the graph for all enabled test cases of a test suite
+     *
+     * @param suite
+     *            the test suite
+     * @return the graph
+     */
+    static TestCaseDependencyGraph of(final WsdlTestSuite suite) {
+        final List<WsdlTestCase> testCases = new ArrayList<>(suite.getTestCaseCount());
+        for (int i = 0; i < suite.getTestCaseCount(); i++) {
+            final WsdlTestCase testCase = suite.getTestCaseAt(i);
+            if (!testCase.isDisabled()) {
+                testCases.add(testCase);
+            }
+        }
+        return new TestCaseDependencyGraph(testCases);
+    }
+
+    private static void collect(final WsdlTestCase testCase, final Access access) {
+        if (!access.testCases.add(testCase)) {
+            // already visited
+            return;
+        }
+        final String config = testCase.getConfig().xmlText();
+        collect(EXPANSION_READ, config, access.reads);
+        collect(SCRIPT_READ, config, access.reads);
+        collect(TRANSFER_READ, config, access.reads);
+        collect(SCRIPT_WRITE, config, access.writes);
+        collect(TRANSFER_WRITE, config, access.writes);
+        if (OPAQUE_ACCESS.matcher(config).find()) {
+            access.opaque = true;
+        }
+        for (final TestStep step : testCase.getTestStepList()) {
+            if (step instanceof WsdlRunTestCaseTestStep && !step.isDisabled()) {
+                final WsdlTestCase target = ((WsdlRunTestCaseTestStep) step).getTargetTestCase();
+                if (target != null) {
+                    collect(target, access);
+                }
+            }
+        }
+    }
+
+    private static void collect(final Pattern pattern, final String config, final Set<String> names) {
+        final Matcher matcher = pattern.matcher(config);
+        while (matcher.find()) {
+            final String name = matcher.group(1).trim();
+            if (!SUtils.isNullOrEmpty(name)) {
+                names.add(name);
+            }
+        }
+    }
+
+    List<WsdlTestCase> getTestCases() {
+        return testCases;
+    }
+
+    /**
+     * @return indices of the test cases that have to wait for the test case with the passed index
+     */
+    List<Integer> getDependents(final int index) {
+        return dependents.get(index);
+    }
+
+    /**
+     * @return number of test cases each test case has to wait for, the array is a copy
+     */
+    int[] getInDegrees() {
+        return inDegrees.clone();
+    }
+
+    /**
+     * @return true if at least two test cases can run concurrently
+     */
+    boolean hasIndependentTestCases() {
+        for (int i = 0; i + 1 < testCases.size(); i++) {
+            if (!dependents.get(i).contains(i + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
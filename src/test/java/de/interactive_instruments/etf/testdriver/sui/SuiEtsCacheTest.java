@@ -0,0 +1,101 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+
+import com.eviware.soapui.SoapUI;
+import com.eviware.soapui.impl.wsdl.WsdlProject;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.interactive_instruments.etf.dal.dto.test.ExecutableTestSuiteDto;
+import de.interactive_instruments.etf.sel.mapping.EtsMapper;
+
+/**
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+class SuiEtsCacheTest {
+
+    private File cacheDir;
+
+    @BeforeAll
+    static void initSoapUI() {
+        SoapUI.setSoapUICore(IISoapUICore.createDefault(), true);
+    }
+
+    @BeforeEach
+    void createCacheDir() throws IOException {
+        cacheDir = new File(Files.createTempDirectory("ets-cache").toFile(), "cache");
+    }
+
+    @AfterEach
+    void deleteCacheDir() {
+        final File[] entries = cacheDir.listFiles();
+        if (entries != null) {
+            for (final File entry : entries) {
+                entry.delete();
+            }
+        }
+        cacheDir.delete();
+        cacheDir.getParentFile().delete();
+    }
+
+    @Test
+    void roundTripOfMappedTestProject() throws Exception {
+        final File projectFile = projectFile();
+        final String hash = SuiFileHash.of(projectFile);
+        final WsdlProject project = new WsdlProject(projectFile.getAbsolutePath());
+        final ExecutableTestSuiteDto mapped;
+        try {
+            mapped = new EtsMapper(project).toTestTaskResult();
+        } finally {
+            project.release();
+        }
+
+        final SuiEtsCache cache = new SuiEtsCache(cacheDir);
+        assertNull(cache.get(projectFile, hash));
+        cache.put(projectFile, hash, mapped);
+        final ExecutableTestSuiteDto cached = cache.get(projectFile, hash);
+
+        // fails if a class of the mapped Executable Test Suite is not serializable and the cache disabled itself
+        assertNotNull(cached);
+        assertEquals(1, cache.getHits());
+        assertEquals(mapped.getId(), cached.getId());
+        assertEquals(mapped.getLabel(), cached.getLabel());
+        assertEquals(mapped.getTestModules().size(), cached.getTestModules().size());
+
+        // a new instance reads the entry of the previous one
+        assertNotNull(new SuiEtsCache(cacheDir).get(projectFile, hash));
+    }
+
+    private static File projectFile() throws URISyntaxException {
+        return new File(SuiEtsCacheTest.class.getResource("/sui/Req-Mgmt-soapui-project.xml").toURI());
+    }
+}
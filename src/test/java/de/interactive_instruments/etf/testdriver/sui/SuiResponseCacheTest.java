@@ -0,0 +1,107 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+
+import com.eviware.soapui.model.project.Project;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+class SuiResponseCacheTest {
+
+    private WfsStubServer first;
+    private WfsStubServer second;
+    private DefaultHttpClient httpClient;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        first = new WfsStubServer(0, 1);
+        second = new WfsStubServer(0, 1);
+        httpClient = new DefaultHttpClient();
+    }
+
+    @AfterEach
+    void tearDown() {
+        httpClient.getConnectionManager().shutdown();
+        first.close();
+        second.close();
+    }
+
+    private static Project cacheEnabledProject() {
+        return (Project) Proxy.newProxyInstance(Project.class.getClassLoader(), new Class<?>[]{Project.class},
+                (proxy, method, args) -> {
+                    if ("getPropertyValue".equals(method.getName())
+                            && SuiConstants.HTTP_CACHE_PROPERTY.equals(args[0])) {
+                        return "true";
+                    }
+                    if ("hashCode".equals(method.getName())) {
+                        return System.identityHashCode(proxy);
+                    }
+                    if ("equals".equals(method.getName())) {
+                        return proxy == args[0];
+                    }
+                    return null;
+                });
+    }
+
+    private String get(final String url, final SuiResponseCache.Stats stats) throws IOException {
+        final HttpGet request = new HttpGet(url);
+        SuiResponseCache.mark(request, stats);
+        final HttpResponse response = httpClient.execute(request);
+        assertEquals(200, response.getStatusLine().getStatusCode());
+        return EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8.name());
+    }
+
+    @Test
+    void sameRequestToDifferentHosts() throws IOException {
+        // both stubs send the same ETag, only the endpoint in the capabilities differs
+        final SuiResponseCache cache = SuiResponseCache.install(httpClient, 1024 * 1024);
+        final Project project = cacheEnabledProject();
+        final SuiResponseCache.Stats stats = cache.open(project);
+        assertNotNull(stats);
+
+        assertTrue(get(first.getCapabilitiesUrl(), stats).contains(first.getEndpoint()));
+        assertTrue(get(second.getCapabilitiesUrl(), stats).contains(second.getEndpoint()));
+        assertEquals(0, stats.getHits());
+
+        assertTrue(get(first.getCapabilitiesUrl(), stats).contains(first.getEndpoint()));
+        assertTrue(get(second.getCapabilitiesUrl(), stats).contains(second.getEndpoint()));
+        assertEquals(4, stats.getCacheable());
+        assertEquals(2, stats.getHits());
+        assertEquals(2, first.getRequestCount());
+        assertEquals(2, second.getRequestCount());
+        cache.close(project);
+    }
+}
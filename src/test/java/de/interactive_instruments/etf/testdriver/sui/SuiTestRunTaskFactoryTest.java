@@ -65,6 +65,7 @@ public class SuiTestRunTaskFactoryTest {
     private static TestDriverManager testDriverManager = null;
     private static IFile testProjectDir = null;
     private static DataStorage DATA_STORAGE = DataStorageTestUtils.inMemoryStorage();
+    private static WfsStubServer wfsStub = null;
 
     private TestRunDto createTestRunDtoForProject(final String url)
             throws URISyntaxException,
@@ -175,13 +176,37 @@ public class SuiTestRunTaskFactoryTest {
         }
     }
 
+    @AfterAll
+    public static void tearDown() {
+        if (wfsStub != null) {
+            wfsStub.close();
+            wfsStub = null;
+        }
+    }
+
+    /**
+     * The embedded WFS stub is used, unless a service is set with ETF_TESTING_WFS_URL, i.e.
+     * https://services.interactive-instruments.de/ogc-reference-2/simple/wfs?request=GetCapabilities&service=wfs
+     */
+    private static String wfsUrl() throws IOException {
+        final String url = PropertyUtils.getenvOrProperty("ETF_TESTING_WFS_URL", null);
+        if (!SUtils.isNullOrEmpty(url)) {
+            return url;
+        }
+        if (wfsStub == null) {
+            wfsStub = new WfsStubServer(
+                    Integer.parseInt(PropertyUtils.getenvOrProperty("ETF_TESTING_WFS_STUB_LATENCY", "0")),
+                    Integer.parseInt(PropertyUtils.getenvOrProperty("ETF_TESTING_WFS_STUB_PAYLOAD_KB", "64")));
+        }
+        return wfsStub.getCapabilitiesUrl();
+    }
+
     @Test
     public void simpleDemoWfs2ReportTest() throws Exception, ComponentNotLoadedException {
 
         // DO NOT RUN THE TESTS IN THE IDE BUT DIRECTLY WITH GRADLE
 
-        // http://www.opengeospatial.org/resource/products/compliant
-        final String testUrl = "https://services.interactive-instruments.de/ogc-reference-2/simple/wfs?request=GetCapabilities&service=wfs";
+        final String testUrl = wfsUrl();
 
         final TestRunDto testRunDto = createTestRunDtoForProject(testUrl);
 
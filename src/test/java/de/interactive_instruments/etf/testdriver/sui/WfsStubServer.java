@@ -0,0 +1,303 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Embedded stand-in for a WFS 2.0 service, so that tests and benchmarks of the driver run offline and measure the
+ * driver instead of the network.
+ *
+ * The stub answers GetCapabilities, DescribeFeatureType and GetFeature requests with canned responses, encoded as
+ * KVP or XML. Each response is delayed by the configured latency. GetFeature responses contain generated features
+ * of the type <code>stub:Place</code> up to the configured payload size, or up to the <code>count</code> of the
+ * request. Other requests are answered with an OWS exception report. GetCapabilities responses carry the same ETag
+ * on every stub instance and are answered with "304 Not Modified" if it is sent in If-None-Match.
+ *
+ * @author Jon Herrmann ( herrmann aT interactive-instruments doT de )
+ */
+final class WfsStubServer implements Closeable {
+
+    final static String PATH = "/wfs";
+    final static String CAPABILITIES_ETAG = "\"wfs-stub-capabilities\"";
+    private final static String NAMESPACE = "http://www.interactive-instruments.de/etf/wfs-stub";
+    private final static String FEATURE_TYPE = "stub:Place";
+    private final static Pattern XML_REQUEST = Pattern.compile(
+            "<(?:[\\w.-]+:)?(GetCapabilities|DescribeFeatureType|GetFeature)[\\s>/]");
+    private final static Pattern XML_COUNT = Pattern.compile("\\scount\\s*=\\s*[\"'](\\d+)[\"']");
+    private final static Pattern XML_RESULT_TYPE = Pattern.compile("\\sresultType\\s*=\\s*[\"'](\\w+)[\"']");
+
+    private final int latencyMs;
+    private final List<String> features = new ArrayList<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final byte[] capabilities;
+    private final byte[] schema;
+
+    /**
+     * Starts the stub on a free port of the loopback interface
+     *
+     * @param latencyMs
+     *            delay of each response in milliseconds
+     * @param payloadKb
+     *            size of a GetFeature response without <code>count</code> in KB, at least one feature is returned
+     */
+    WfsStubServer(final int latencyMs, final int payloadKb) throws IOException {
+        this.latencyMs = latencyMs;
+        int size = 0;
+        do {
+            final String feature = feature(features.size());
+            features.add(feature);
+            size += feature.length();
+        } while (size < payloadKb * 1024);
+
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.capabilities = resource("capabilities.xml")
+                .replace("${endpoint}", getEndpoint())
+                .replace("${countDefault}", String.valueOf(features.size()))
+                .getBytes(StandardCharsets.UTF_8);
+        this.schema = resource("describe-feature-type.xsd").getBytes(StandardCharsets.UTF_8);
+        this.executor = Executors.newCachedThreadPool(r -> {
+            final Thread thread = new Thread(r, "wfs-stub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext(PATH, this::handle);
+        server.start();
+    }
+
+    private static String resource(final String name) throws IOException {
+        try (final InputStream in = WfsStubServer.class.getResourceAsStream("/wfs-stub/" + name)) {
+            if (in == null) {
+                throw new IOException("Resource wfs-stub/" + name + " not found");
+            }
+            return new String(readAll(in), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static byte[] readAll(final InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        for (int read; (read = in.read(buffer)) != -1;) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static String feature(final int index) {
+        final String id = "place." + index;
+        return "<wfs:member><stub:Place gml:id=\"" + id + "\"><stub:name>Place " + index + "</stub:name>"
+                + "<stub:position><gml:Point gml:id=\"" + id + ".position\" srsName=\"urn:ogc:def:crs:EPSG::4326\">"
+                + "<gml:pos>" + (47 + index % 8) + "." + index % 1000 + " " + (5 + index % 10) + "." + index % 997
+                + "</gml:pos></gml:Point></stub:position></stub:Place></wfs:member>";
+    }
+
+    /**
+     * @return the endpoint, without query
+     */
+    String getEndpoint() {
+        final InetSocketAddress address = server.getAddress();
+        return "http://" + address.getAddress().getHostAddress() + ":" + address.getPort() + PATH;
+    }
+
+    /**
+     * @return the KVP GetCapabilities request
+     */
+    String getCapabilitiesUrl() {
+        return getEndpoint() + "?service=WFS&request=GetCapabilities";
+    }
+
+    /**
+     * @return number of handled requests
+     */
+    long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * @return number of features returned by GetFeature requests without count
+     */
+    int getFeatureCount() {
+        return features.size();
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            if (latencyMs > 0) {
+                Thread.sleep(latencyMs);
+            }
+            final Map<String, String> parameters = parameters(exchange);
+            final String request = parameters.getOrDefault("request", "");
+            if ("GetCapabilities".equalsIgnoreCase(request)) {
+                exchange.getResponseHeaders().set("ETag", CAPABILITIES_ETAG);
+                if (CAPABILITIES_ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                } else {
+                    send(exchange, 200, "application/xml", capabilities);
+                }
+            } else if ("DescribeFeatureType".equalsIgnoreCase(request)) {
+                final String typeNames = parameters.get("typenames");
+                if (typeNames != null && !typeNames.contains(FEATURE_TYPE)) {
+                    sendException(exchange, "InvalidParameterValue", "typeNames", "Unknown feature type");
+                } else {
+                    send(exchange, 200, "application/gml+xml; version=3.2", schema);
+                }
+            } else if ("GetFeature".equalsIgnoreCase(request)) {
+                final String typeNames = parameters.get("typenames");
+                if (typeNames != null && !typeNames.contains(FEATURE_TYPE)) {
+                    sendException(exchange, "InvalidParameterValue", "typeNames", "Unknown feature type");
+                } else {
+                    send(exchange, 200, "application/gml+xml; version=3.2", getFeature(parameters));
+                }
+            } else if (request.isEmpty()) {
+                sendException(exchange, "MissingParameterValue", "request", "Parameter request missing");
+            } else {
+                sendException(exchange, "OperationNotSupported", request, "Operation not supported by the stub");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.close();
+        } catch (final RuntimeException e) {
+            sendException(exchange, "NoApplicableCode", null, e.toString());
+        }
+    }
+
+    /**
+     * @return KVP parameters with lower case keys, or the parameters of an XML encoded request
+     */
+    private static Map<String, String> parameters(final HttpExchange exchange) throws IOException {
+        final Map<String, String> parameters = new HashMap<>();
+        final String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (final String pair : query.split("&")) {
+                final int separator = pair.indexOf('=');
+                if (separator > 0) {
+                    parameters.put(decode(pair.substring(0, separator)).toLowerCase(Locale.ENGLISH),
+                            decode(pair.substring(separator + 1)));
+                }
+            }
+        }
+        if ("POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+            final String body;
+            try (final InputStream in = exchange.getRequestBody()) {
+                body = new String(readAll(in), StandardCharsets.UTF_8);
+            }
+            put(parameters, "request", XML_REQUEST.matcher(body));
+            put(parameters, "count", XML_COUNT.matcher(body));
+            put(parameters, "resulttype", XML_RESULT_TYPE.matcher(body));
+            if (body.contains(":Place") && body.contains(NAMESPACE)) {
+                parameters.put("typenames", FEATURE_TYPE);
+            }
+        }
+        return parameters;
+    }
+
+    private static void put(final Map<String, String> parameters, final String key, final Matcher matcher) {
+        if (matcher.find()) {
+            parameters.put(key, matcher.group(1));
+        }
+    }
+
+    private static String decode(final String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private byte[] getFeature(final Map<String, String> parameters) {
+        final boolean hits = "hits".equalsIgnoreCase(parameters.get("resulttype"));
+        int returned = features.size();
+        final String count = parameters.getOrDefault("count", parameters.get("maxfeatures"));
+        if (count != null) {
+            returned = Math.min(returned, Integer.parseInt(count.trim()));
+        }
+        if (hits) {
+            returned = 0;
+        }
+        final StringBuilder collection = new StringBuilder(returned * features.get(0).length() + 512)
+                .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+                .append("<wfs:FeatureCollection xmlns:wfs=\"http://www.opengis.net/wfs/2.0\"")
+                .append(" xmlns:gml=\"http://www.opengis.net/gml/3.2\" xmlns:stub=\"").append(NAMESPACE).append('"')
+                .append(" timeStamp=\"").append(Instant.now()).append('"')
+                .append(" numberMatched=\"").append(features.size()).append('"')
+                .append(" numberReturned=\"").append(returned).append("\">");
+        for (int i = 0; i < returned; i++) {
+            collection.append(features.get(i));
+        }
+        return collection.append("</wfs:FeatureCollection>").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void sendException(final HttpExchange exchange, final String code, final String locator,
+            final String text) throws IOException {
+        final String report = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<ows:ExceptionReport xmlns:ows=\"http://www.opengis.net/ows/1.1\" version=\"2.0.0\">"
+                + "<ows:Exception exceptionCode=\"" + code + "\""
+                + (locator != null ? " locator=\"" + locator.replace("\"", "&quot;") + "\"" : "") + ">"
+                + "<ows:ExceptionText>" + text.replace("&", "&amp;").replace("<", "&lt;") + "</ows:ExceptionText>"
+                + "</ows:Exception></ows:ExceptionReport>";
+        send(exchange, "NoApplicableCode".equals(code) ? 500 : 400, "application/xml",
+                report.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(final HttpExchange exchange, final int status, final String contentType,
+            final byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (final OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
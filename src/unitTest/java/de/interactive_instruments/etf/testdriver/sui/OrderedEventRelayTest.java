@@ -0,0 +1,201 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class OrderedEventRelayTest {
+
+    private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+    private Runnable event(final String name) {
+        return () -> events.add(name);
+    }
+
+    @Test
+    public void headEventsAreForwarded() {
+        final OrderedEventRelay relay = new OrderedEventRelay();
+        relay.begin(Arrays.asList("a", "b"));
+        relay.dispatch("a", event("a1"));
+        relay.dispatch("a", event("a2"));
+        assertEquals(Arrays.asList("a1", "a2"), events);
+    }
+
+    @Test
+    public void eventsAreForwardedInDeclaredOrder() {
+        final OrderedEventRelay relay = new OrderedEventRelay();
+        relay.begin(Arrays.asList("a", "b", "c"));
+        relay.dispatch("c", event("c1"));
+        relay.dispatch("b", event("b1"));
+        relay.complete("c");
+        relay.dispatch("a", event("a1"));
+        assertEquals(Collections.singletonList("a1"), events);
+        relay.dispatch("b", event("b2"));
+        relay.complete("a");
+        assertEquals(Arrays.asList("a1", "b1", "b2"), events);
+        relay.dispatch("b", event("b3"));
+        relay.complete("b");
+        assertEquals(Arrays.asList("a1", "b1", "b2", "b3", "c1"), events);
+    }
+
+    @Test
+    public void bufferedEventsAreDetached() {
+        final OrderedEventRelay relay = new OrderedEventRelay();
+        relay.begin(Arrays.asList("a", "b"));
+        final StringBuilder state = new StringBuilder("1");
+        final OrderedEventRelay.Event live = new OrderedEventRelay.Event() {
+            @Override
+            public Runnable detach() {
+                final String snapshot = state.toString();
+                return () -> events.add("b" + snapshot);
+            }
+
+            @Override
+            public void run() {
+                events.add("b" + state);
+            }
+        };
+        relay.dispatch("b", live);
+        state.setLength(0);
+        state.append("2");
+        relay.complete("a");
+        assertEquals(Collections.singletonList("b1"), events);
+
+        // forwarded without detaching
+        relay.dispatch("b", live);
+        assertEquals(Arrays.asList("b1", "b2"), events);
+    }
+
+    @Test
+    public void lateEventsAreForwarded() {
+        final OrderedEventRelay relay = new OrderedEventRelay();
+        relay.begin(Arrays.asList("a", "b", "c"));
+        relay.complete("a");
+        relay.dispatch("c", event("c1"));
+        // a has already been passed
+        relay.dispatch("a", event("a1"));
+        assertEquals(Collections.singletonList("a1"), events);
+        relay.complete("b");
+        relay.complete("c");
+        // all items completed
+        relay.dispatch("a", event("a2"));
+        relay.dispatch("unknown", event("u1"));
+        assertEquals(Arrays.asList("a1", "c1", "a2", "u1"), events);
+    }
+
+    @Test
+    public void relayCanBeReused() {
+        final OrderedEventRelay relay = new OrderedEventRelay();
+        relay.begin(Arrays.asList("a", "b"));
+        assertThrows(IllegalStateException.class, () -> relay.begin(Collections.singletonList("c")));
+        relay.complete("b");
+        relay.complete("a");
+        relay.begin(Arrays.asList("b", "a"));
+        relay.dispatch("a", event("a1"));
+        relay.dispatch("b", event("b1"));
+        relay.complete("b");
+        assertEquals(Arrays.asList("b1", "a1"), events);
+    }
+
+    @Test
+    public void nestedEventsAreForwardedInDeclaredOrder() {
+        final OrderedEventRelay relay = new OrderedEventRelay();
+        relay.begin(Arrays.asList("s1", "s2"));
+        final List<String> testCases = Arrays.asList("t1", "t2");
+        final OrderedEventRelay nested = relay.nest("s2", testCases);
+        relay.dispatch("s2", event("s2-before"));
+        relay.dispatch("t2", "s2", event("t2"));
+        relay.dispatch("t1", "s2", event("t1"));
+        assertTrue(events.isEmpty());
+        relay.dispatch("s1", event("s1"));
+        relay.complete("s1");
+        assertEquals(Arrays.asList("s1", "s2-before", "t1"), events);
+        nested.complete("t1");
+        nested.complete("t2");
+        relay.unnest(testCases);
+        relay.dispatch("s2", event("s2-after"));
+        relay.complete("s2");
+        assertEquals(Arrays.asList("s1", "s2-before", "t1", "t2", "s2-after"), events);
+    }
+
+    @Test
+    public void eventsAreNotRunConcurrently() throws Exception {
+        final OrderedEventRelay relay = new OrderedEventRelay();
+        final List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            keys.add("k" + i);
+        }
+        relay.begin(keys);
+        final int[] running = {0};
+        final int[] maxRunning = {0};
+        final ExecutorService executor = Executors.newFixedThreadPool(keys.size());
+        final CountDownLatch start = new CountDownLatch(1);
+        try {
+            for (final String key : keys) {
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for (int i = 0; i < 100; i++) {
+                        final String name = key + "-" + i;
+                        relay.dispatch(key, () -> {
+                            synchronized (running) {
+                                maxRunning[0] = Math.max(maxRunning[0], ++running[0]);
+                            }
+                            events.add(name);
+                            synchronized (running) {
+                                running[0]--;
+                            }
+                        });
+                    }
+                    relay.complete(key);
+                });
+            }
+            start.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, maxRunning[0]);
+        final List<String> expected = new ArrayList<>();
+        for (final String key : keys) {
+            for (int i = 0; i < 100; i++) {
+                expected.add(key + "-" + i);
+            }
+        }
+        assertEquals(expected, events);
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import de.interactive_instruments.etf.dal.dao.StreamWriteDao;
+import de.interactive_instruments.etf.dal.dto.test.ExecutableTestSuiteDto;
+import de.interactive_instruments.etf.model.EidFactory;
+import de.interactive_instruments.exceptions.StorageException;
+
+public class SuiBulkWriterTest {
+
+    private final List<Collection<?>> batches = new ArrayList<>();
+    private final List<ExecutableTestSuiteDto> written = new ArrayList<>();
+    private boolean failBatches;
+
+    @SuppressWarnings("unchecked")
+    private StreamWriteDao<ExecutableTestSuiteDto> dao() {
+        return (StreamWriteDao<ExecutableTestSuiteDto>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{StreamWriteDao.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("addAll")) {
+                        batches.add(new ArrayList<>((Collection<?>) args[0]));
+                        if (failBatches) {
+                            throw new StorageException("batch failed");
+                        }
+                        for (final Object ets : (Collection<?>) args[0]) {
+                            written.add((ExecutableTestSuiteDto) ets);
+                        }
+                    } else if (method.getName().equals("add")) {
+                        written.add((ExecutableTestSuiteDto) args[0]);
+                    }
+                    return null;
+                });
+    }
+
+    private static ExecutableTestSuiteDto ets() {
+        final ExecutableTestSuiteDto ets = new ExecutableTestSuiteDto();
+        ets.setId(EidFactory.getDefault().createRandomId());
+        return ets;
+    }
+
+    @Test
+    public void fullBatchIsWritten() throws StorageException {
+        final SuiBulkWriter writer = new SuiBulkWriter(dao(), 2);
+        final ExecutableTestSuiteDto a = ets();
+        final ExecutableTestSuiteDto b = ets();
+        writer.add(a);
+        assertTrue(written.isEmpty());
+        writer.add(b);
+        assertEquals(1, batches.size());
+        assertEquals(Arrays.asList(a, b), written);
+        writer.release();
+    }
+
+    @Test
+    public void queueIsWrittenWhenTheLastLoaderIsDone() throws StorageException {
+        final SuiBulkWriter writer = new SuiBulkWriter(dao(), 50);
+        writer.expect();
+        writer.expect();
+        final ExecutableTestSuiteDto a = ets();
+        writer.add(a);
+        writer.done();
+        assertTrue(written.isEmpty());
+        final ExecutableTestSuiteDto b = ets();
+        writer.add(b);
+        writer.done();
+        assertEquals(Arrays.asList(a, b), written);
+
+        // bulk mode has ended
+        final ExecutableTestSuiteDto c = ets();
+        writer.add(c);
+        assertEquals(Arrays.asList(a, b, c), written);
+        assertEquals(1, batches.size());
+        writer.release();
+    }
+
+    @Test
+    public void failedBatchIsWrittenOneByOne() throws StorageException {
+        failBatches = true;
+        final SuiBulkWriter writer = new SuiBulkWriter(dao(), 3);
+        final ExecutableTestSuiteDto a = ets();
+        final ExecutableTestSuiteDto b = ets();
+        final ExecutableTestSuiteDto c = ets();
+        writer.add(a);
+        writer.add(b);
+        writer.add(c);
+        assertEquals(1, batches.size());
+        assertEquals(Arrays.asList(a, b, c), written);
+        writer.release();
+    }
+
+    @Test
+    public void discardedEtsIsNotWritten() throws StorageException {
+        final SuiBulkWriter writer = new SuiBulkWriter(dao(), 50);
+        final ExecutableTestSuiteDto a = ets();
+        final ExecutableTestSuiteDto b = ets();
+        writer.add(a);
+        writer.add(b);
+        assertTrue(writer.discard(a));
+        assertFalse(writer.discard(a));
+        writer.release();
+        assertEquals(Arrays.asList(b), written);
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.interactive_instruments.etf.dal.dto.test.ExecutableTestSuiteDto;
+import de.interactive_instruments.etf.model.EidFactory;
+
+public class SuiLoadRegistryTest {
+
+    private final static Predicate<ExecutableTestSuiteDto> AVAILABLE = ets -> true;
+
+    @TempDir
+    Path dir;
+
+    private SuiLoadRegistry registry;
+
+    @BeforeEach
+    public void createRegistry() {
+        registry = new SuiLoadRegistry();
+        registry.setActive(true);
+    }
+
+    private File file(final String name, final String content) throws IOException {
+        final File file = dir.resolve(name).toFile();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static ExecutableTestSuiteDto ets() {
+        final ExecutableTestSuiteDto ets = new ExecutableTestSuiteDto();
+        ets.setId(EidFactory.getDefault().createRandomId());
+        return ets;
+    }
+
+    private ExecutableTestSuiteDto load(final File file, final List<ExecutableTestSuiteDto> dependencies)
+            throws IOException {
+        final ExecutableTestSuiteDto ets = ets();
+        registry.put(file, SuiFileHash.of(file), ets, dependencies);
+        return ets;
+    }
+
+    @Test
+    public void unchangedFileIsReused() throws IOException {
+        final File file = file("a.xml", "a");
+        final ExecutableTestSuiteDto ets = load(file, Collections.emptyList());
+        assertEquals(Collections.emptyList(), registry.release(file, ets, AVAILABLE));
+        assertSame(ets, registry.getUnchanged(file, SuiFileHash.of(file), Collections.emptyList()));
+        assertEquals(Collections.emptyList(), registry.takeStale(file));
+    }
+
+    @Test
+    public void changedFileIsDeleted() throws IOException {
+        final File file = file("a.xml", "a");
+        final ExecutableTestSuiteDto ets = load(file, Collections.emptyList());
+        file("a.xml", "b");
+        assertEquals(Collections.singletonList(ets), registry.release(file, ets, AVAILABLE));
+        assertNull(registry.getUnchanged(file, SuiFileHash.of(file), Collections.emptyList()));
+    }
+
+    @Test
+    public void handedOverEtsIsStaleIfDependencyChanged() throws IOException {
+        final File dependencyFile = file("dep.xml", "dep");
+        final File file = file("a.xml", "a");
+        final ExecutableTestSuiteDto dependency = load(dependencyFile, Collections.emptyList());
+        final ExecutableTestSuiteDto ets = load(file, Collections.singletonList(dependency));
+        assertEquals(Collections.emptyList(), registry.release(file, ets, AVAILABLE));
+
+        // the dependency has been rebuilt
+        final ExecutableTestSuiteDto rebuilt = ets();
+        assertNull(registry.getUnchanged(file, SuiFileHash.of(file), Collections.singletonList(rebuilt)));
+        // a failed reload must not leave the old Executable Test Suite behind
+        assertEquals(Collections.singletonList(ets), registry.takeStale(file));
+        assertEquals(Collections.emptyList(), registry.takeStale(file));
+    }
+
+    @Test
+    public void handedOverDependentsAreDeletedWithDependency() throws IOException {
+        final File dependencyFile = file("dep.xml", "dep");
+        final File file = file("a.xml", "a");
+        final ExecutableTestSuiteDto dependency = load(dependencyFile, Collections.emptyList());
+        final ExecutableTestSuiteDto ets = load(file, Collections.singletonList(dependency));
+        assertEquals(Collections.emptyList(), registry.release(file, ets, AVAILABLE));
+        assertTrue(dependencyFile.delete());
+        assertEquals(Arrays.asList(dependency, ets), registry.release(dependencyFile, dependency, AVAILABLE));
+    }
+
+    @Test
+    public void dependentIsDeletedAfterDependency() throws IOException {
+        final File dependencyFile = file("dep.xml", "dep");
+        final File file = file("a.xml", "a");
+        final ExecutableTestSuiteDto dependency = load(dependencyFile, Collections.emptyList());
+        final ExecutableTestSuiteDto ets = load(file, Collections.singletonList(dependency));
+        assertTrue(dependencyFile.delete());
+        assertEquals(Collections.singletonList(dependency), registry.release(dependencyFile, dependency, AVAILABLE));
+        assertEquals(Collections.singletonList(ets), registry.release(file, ets, AVAILABLE));
+    }
+
+    @Test
+    public void dependentOfUnavailableEtsIsDeleted() throws IOException {
+        final File file = file("a.xml", "a");
+        final ExecutableTestSuiteDto foreign = ets();
+        final ExecutableTestSuiteDto ets = load(file, Collections.singletonList(foreign));
+        assertEquals(Collections.singletonList(ets), registry.release(file, ets, dependency -> dependency != foreign));
+    }
+
+    @Test
+    public void nothingIsKeptIfInactive() throws IOException {
+        final File file = file("a.xml", "a");
+        final ExecutableTestSuiteDto ets = load(file, Collections.emptyList());
+        registry.setActive(false);
+        assertEquals(Collections.singletonList(ets), registry.release(file, ets, AVAILABLE));
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+
+public class SuiObjectInputStreamTest {
+
+    public static class Allowed implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final List<String> values = new ArrayList<>(Arrays.asList("a", "b"));
+        private final Map<String, long[]> samples = new HashMap<>(Collections.singletonMap("a", new long[]{1, 2}));
+    }
+
+    private static byte[] write(final Object object) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object read(final byte[] bytes, final String... allowed) throws Exception {
+        try (final ObjectInputStream in = new SuiObjectInputStream(new ByteArrayInputStream(bytes), allowed)) {
+            return in.readObject();
+        }
+    }
+
+    @Test
+    public void allowedClassesAreRead() throws Exception {
+        final Object object = read(write(new Allowed()), Allowed.class.getName());
+        assertEquals(Arrays.asList("a", "b"), ((Allowed) object).values);
+        assertArrayEquals(new long[]{1, 2}, ((Allowed) object).samples.get("a"));
+        assertEquals(Collections.singletonList("x"),
+                read(write(Collections.unmodifiableList(new ArrayList<>(Collections.singletonList("x"))))));
+    }
+
+    @Test
+    public void classesInAllowedPackagesAreRead() throws Exception {
+        assertNotNull(read(write(new Allowed()), SuiObjectInputStreamTest.class.getPackage().getName()));
+    }
+
+    @Test
+    public void otherClassesAreRejected() throws Exception {
+        assertThrows(InvalidClassException.class, () -> read(write(new Allowed())));
+        assertThrows(InvalidClassException.class, () -> read(write(new Allowed[]{new Allowed()})));
+        assertThrows(InvalidClassException.class, () -> read(write(new File("x"))));
+        // prefix of an allowed name
+        assertThrows(InvalidClassException.class, () -> read(write(new Allowed()), Allowed.class.getName() + "X"));
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.junit.jupiter.api.Test;
+
+public class SuiSinglePassXPathTest {
+
+    private final static String WFS = "<wfs:FeatureCollection xmlns:wfs='http://www.opengis.net/wfs/2.0'"
+            + " xmlns:ex='http://example.com' numberMatched='3'>"
+            + "<wfs:member><ex:Road gml:id='r1' xmlns:gml='http://www.opengis.net/gml/3.2'>"
+            + "<ex:name>A1</ex:name></ex:Road></wfs:member>"
+            + "<wfs:member><ex:Road><ex:name>A2</ex:name></ex:Road></wfs:member>"
+            + "<wfs:member><Road xmlns=''><name>A3</name></Road></wfs:member>"
+            + "</wfs:FeatureCollection>";
+
+    private final static String NAMESPACES = "declare namespace wfs='http://www.opengis.net/wfs/2.0'; "
+            + "declare namespace ex='http://example.com'; "
+            + "declare namespace gml='http://www.opengis.net/gml/3.2'; ";
+
+    private static SuiSinglePassXPath.Result evaluate(final String expression, final String document)
+            throws XMLStreamException {
+        return SuiSinglePassXPath.compile(expression).evaluate(new StringReader(document));
+    }
+
+    @Test
+    public void namespacesAreResolved() throws XMLStreamException {
+        assertTrue(evaluate(NAMESPACES + "count(/wfs:FeatureCollection/wfs:member/ex:Road) = 2", WFS).isPassed());
+        assertTrue(evaluate(NAMESPACES + "count(//ex:name) = 2", WFS).isPassed());
+        assertTrue(evaluate(NAMESPACES + "count(//ex:*) = 4", WFS).isPassed());
+        assertTrue(evaluate(NAMESPACES + "//ex:Road/@gml:id = 'r1'", WFS).isPassed());
+        assertTrue(evaluate(NAMESPACES + "/wfs:FeatureCollection/@numberMatched = '3'", WFS).isPassed());
+    }
+
+    @Test
+    public void unprefixedNamesAreInNoNamespace() throws XMLStreamException {
+        assertTrue(evaluate("count(//Road) = 1", WFS).isPassed());
+        assertTrue(evaluate("//Road/name = 'A3'", WFS).isPassed());
+        assertTrue(evaluate("empty(/FeatureCollection)", WFS).isPassed());
+    }
+
+    @Test
+    public void elementsInTheDefaultNamespaceNeedAPrefix() throws XMLStreamException {
+        final String document = "<a xmlns='urn:x'><b/><b/></a>";
+        assertTrue(evaluate("count(//b) = 0", document).isPassed());
+        assertTrue(evaluate("declare namespace x='urn:x'; count(/x:a/x:b) = 2", document).isPassed());
+    }
+
+    @Test
+    public void failedTestsReportTheExpression() throws XMLStreamException {
+        final SuiSinglePassXPath.Result result = evaluate(NAMESPACES + "count(//ex:Road) > 2", WFS);
+        assertFalse(result.isPassed());
+        assertEquals(2, result.getMatches());
+        assertTrue(result.getMessage().contains("count(//ex:Road) > 2"));
+        assertFalse(evaluate(NAMESPACES + "//ex:name = 'A3'", WFS).isPassed());
+        // true if any value differs, as in XPath
+        assertTrue(evaluate(NAMESPACES + "//ex:name != 'A1'", WFS).isPassed());
+        assertFalse(evaluate(NAMESPACES + "//ex:Road/@gml:id != 'r1'", WFS).isPassed());
+    }
+
+    @Test
+    public void undeclaredPrefixesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> SuiSinglePassXPath.compile("count(//ex:Road) = 1"));
+    }
+
+    @Test
+    public void predicatesAndOtherUnsupportedExpressionsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> SuiSinglePassXPath.compile("count(//a[1]) = 1"));
+        assertThrows(IllegalArgumentException.class, () -> SuiSinglePassXPath.compile("count(//a[@b='c']) = 1"));
+        assertThrows(IllegalArgumentException.class, () -> SuiSinglePassXPath.compile("exists(//a/text())"));
+        assertThrows(IllegalArgumentException.class, () -> SuiSinglePassXPath.compile("exists(//child::a)"));
+        assertThrows(IllegalArgumentException.class, () -> SuiSinglePassXPath.compile("exists(a/b)"));
+        assertThrows(IllegalArgumentException.class, () -> SuiSinglePassXPath.compile("exists(/a/@b/c)"));
+        assertThrows(IllegalArgumentException.class, () -> SuiSinglePassXPath.compile("sum(//a) = 1"));
+    }
+
+    @Test
+    public void emptyDocumentsAreRejected() {
+        assertThrows(XMLStreamException.class, () -> evaluate("exists(/a)", ""));
+        assertThrows(XMLStreamException.class, () -> SuiSinglePassXPath.compile("exists(/a)")
+                .evaluate(new ByteArrayInputStream(new byte[0])));
+    }
+
+    @Test
+    public void documentsWithoutMatchesPassEmptyTests() throws XMLStreamException {
+        assertTrue(evaluate("empty(//b)", "<a/>").isPassed());
+        assertFalse(evaluate("exists(//b)", "<a/>").isPassed());
+        assertTrue(evaluate("count(//b) = 0", "<a/>").isPassed());
+    }
+
+    @Test
+    public void malformedDocumentsAreRejected() {
+        assertThrows(XMLStreamException.class, () -> evaluate("count(//b) = 2", "<a><b></a>"));
+        assertThrows(XMLStreamException.class, () -> evaluate("exists(//c)", "<a><b/>"));
+        assertThrows(XMLStreamException.class, () -> evaluate("exists(//c)", "no xml"));
+        // DTDs are not supported
+        assertThrows(XMLStreamException.class,
+                () -> evaluate("exists(//b)", "<!DOCTYPE a [<!ENTITY e 'x'>]><a>&e;</a>"));
+    }
+
+    @Test
+    public void evaluationStopsWhenTheResultIsKnown() throws XMLStreamException {
+        // the malformed rest of the document is not read
+        assertTrue(SuiSinglePassXPath.compile("exists(//b)").evaluate(
+                new ByteArrayInputStream("<a><b/><c></a>".getBytes(StandardCharsets.UTF_8))).isPassed());
+    }
+}
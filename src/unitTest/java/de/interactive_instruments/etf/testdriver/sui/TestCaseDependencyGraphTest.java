@@ -0,0 +1,158 @@
+/**
+ * Copyright 2017-2022 European Union, interactive instruments GmbH
+ *
+ * Licensed under the EUPL, Version 1.2 or - as soon they will be approved by
+ * the European Commission - subsequent versions of the EUPL (the "Licence");
+ * You may not use this work except in compliance with the Licence.
+ * You may obtain a copy of the Licence at:
+ *
+ * https://joinup.ec.europa.eu/software/page/eupl
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the Licence is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the Licence for the specific language governing permissions and
+ * limitations under the Licence.
+ *
+ * This work was supported by the EU Interoperability Solutions for
+ * European Public Administrations Programme (http://ec.europa.eu/isa)
+ * through Action 1.17: A Reusable INSPIRE Reference Platform (ARE3NA).
+ */
+package de.interactive_instruments.etf.testdriver.sui;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import com.eviware.soapui.SoapUI;
+import com.eviware.soapui.impl.wsdl.WsdlProject;
+import com.eviware.soapui.impl.wsdl.WsdlTestSuite;
+import com.eviware.soapui.impl.wsdl.testcase.WsdlTestCase;
+import com.eviware.soapui.impl.wsdl.teststeps.WsdlGroovyScriptTestStep;
+import com.eviware.soapui.impl.wsdl.teststeps.registry.GroovyScriptStepFactory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TestCaseDependencyGraphTest {
+
+    private WsdlProject project;
+
+    @BeforeAll
+    public static void initCore() {
+        SoapUI.setSoapUICore(IISoapUICore.createDefault(), true);
+    }
+
+    @BeforeEach
+    public void createProject() throws Exception {
+        project = new WsdlProject();
+    }
+
+    @AfterEach
+    public void releaseProject() {
+        project.release();
+    }
+
+    private TestCaseDependencyGraph graph(final String... scripts) {
+        final WsdlTestSuite suite = project.addNewTestSuite("TS " + project.getTestSuiteCount());
+        for (int i = 0; i < scripts.length; i++) {
+            final WsdlTestCase testCase = suite.addNewTestCase("TC " + i);
+            final WsdlGroovyScriptTestStep step = (WsdlGroovyScriptTestStep) testCase
+                    .addTestStep(GroovyScriptStepFactory.GROOVY_TYPE, "Script");
+            step.setScript(scripts[i]);
+        }
+        return TestCaseDependencyGraph.of(suite);
+    }
+
+    @Test
+    public void independentTestCases() {
+        final TestCaseDependencyGraph graph = graph(
+                "log.info('a')",
+                "context.setProperty('x', 1); assert context.getProperty('x') == 1",
+                "testRunner.testCase.testSuite.setPropertyValue('a', '1')",
+                "testRunner.testCase.testSuite.getPropertyValue('b')");
+        assertTrue(graph.hasIndependentTestCases());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(Collections.emptyList(), graph.getDependents(i));
+        }
+        assertArrayEquals(new int[]{0, 0, 0, 0}, graph.getInDegrees());
+    }
+
+    @Test
+    public void literalWriteAndRead() {
+        final TestCaseDependencyGraph graph = graph(
+                "testRunner.testCase.testSuite.setPropertyValue(\"id\", '1')",
+                "log.info('independent')",
+                "def id = testRunner.testCase.testSuite.getPropertyValue('id')");
+        assertEquals(Collections.singletonList(2), graph.getDependents(0));
+        assertEquals(Collections.emptyList(), graph.getDependents(1));
+        assertArrayEquals(new int[]{0, 0, 1}, graph.getInDegrees());
+        assertTrue(graph.hasIndependentTestCases());
+    }
+
+    @Test
+    public void expansionRead() {
+        final TestCaseDependencyGraph graph = graph(
+                "testRunner.testCase.testSuite.project.setPropertyValue('endpoint', 'http://localhost')",
+                "log.info(context.expand('${#Project#endpoint}'))");
+        assertEquals(Collections.singletonList(1), graph.getDependents(0));
+        assertFalse(graph.hasIndependentTestCases());
+    }
+
+    @Test
+    public void readByVariableIsOpaque() {
+        final TestCaseDependencyGraph graph = graph(
+                "log.info('a')",
+                "def name = 'id'; testRunner.testCase.testSuite.getPropertyValue(name)",
+                "log.info('b')");
+        assertEquals(Collections.singletonList(1), graph.getDependents(0));
+        assertEquals(Collections.singletonList(2), graph.getDependents(1));
+        assertFalse(graph.hasIndependentTestCases());
+    }
+
+    @Test
+    public void groovyAccessorIsOpaque() {
+        final TestCaseDependencyGraph graph = graph(
+                "log.info('a')",
+                "log.info(testRunner.testCase.testSuite.properties.foo.value)",
+                "log.info('b')");
+        assertEquals(Collections.singletonList(1), graph.getDependents(0));
+        assertEquals(Collections.singletonList(2), graph.getDependents(1));
+    }
+
+    @Test
+    public void dynamicExpansionIsOpaque() {
+        final TestCaseDependencyGraph graph = graph(
+                "log.info('a')",
+                "log.info(context.expand('${#TestSuite#${#TestCase#name}}'))");
+        assertEquals(Collections.singletonList(1), graph.getDependents(0));
+    }
+
+    @Test
+    public void opaqueWriteOrdersAllTestCases() {
+        final TestCaseDependencyGraph graph = graph(
+                "log.info('a')",
+                "testRunner.testCase.testSuite.setPropertiesFromFile('x.properties')",
+                "log.info('b')",
+                "log.info('c')");
+        assertEquals(Collections.singletonList(1), graph.getDependents(0));
+        assertEquals(Arrays.asList(2, 3), graph.getDependents(1));
+        assertArrayEquals(new int[]{0, 1, 1, 1}, graph.getInDegrees());
+        // test case 2 and 3 can still run concurrently
+        assertTrue(graph.hasIndependentTestCases());
+    }
+
+    @Test
+    public void disabledTestCasesAreIgnored() {
+        final WsdlTestSuite suite = project.addNewTestSuite("TS");
+        suite.addNewTestCase("TC 0");
+        suite.addNewTestCase("TC 1").setDisabled(true);
+        suite.addNewTestCase("TC 2");
+        final TestCaseDependencyGraph graph = TestCaseDependencyGraph.of(suite);
+        assertEquals(2, graph.getTestCases().size());
+        assertEquals("TC 2", graph.getTestCases().get(1).getName());
+    }
+}